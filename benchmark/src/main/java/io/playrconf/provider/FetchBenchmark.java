@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the network bound stages of {@link GitProvider#loadData}: the
+ * retrieval of the repository with each fetch mode, and the whole loading.
+ * Repositories are served from the local filesystem, so the results exclude
+ * the network latency but include the pack negotiation and transfer.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FetchBenchmark {
+
+    /**
+     * Number of files in the data directory.
+     */
+    @Param({"10", "1000"})
+    public int fileCount;
+
+    /**
+     * Number of commits.
+     */
+    @Param({"1", "100"})
+    public int historyDepth;
+
+    /**
+     * Fetch mode to use.
+     */
+    @Param({"clone", "single-branch", "in-memory"})
+    public String fetchMode;
+
+    /**
+     * Directory holding the synthetic repository.
+     */
+    private File dir;
+
+    /**
+     * Provider configuration.
+     */
+    private Config config;
+
+    /**
+     * Provider to benchmark.
+     */
+    private GitProvider provider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDirectory("play-rconf-git-benchmark").toFile();
+        final String remoteURI = SyntheticRepository.create(new File(this.dir, "remote.git"), this.fileCount, this.historyDepth, 100);
+        this.config = ConfigFactory.parseString(
+            "uri = \"" + remoteURI + "\"\n"
+                + "filepath = \"" + SyntheticRepository.FILEPATH + "\"\n"
+                + "mode = \"none\"\n"
+                + "fetch.mode = \"" + this.fetchMode + "\"\n"
+        );
+        this.provider = new GitProvider();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        FileUtils.delete(this.dir, FileUtils.RECURSIVE | FileUtils.RETRY);
+    }
+
+    @Benchmark
+    public void fetch(final Blackhole blackhole) throws Exception {
+        final Repository repository = this.provider.openRepository(this.config, this.config.getString("uri"), "none");
+        blackhole.consume(repository);
+        Workspace.release(repository);
+    }
+
+    @Benchmark
+    public void loadData(final Blackhole blackhole) {
+        this.provider.loadData(this.config, blackhole::consume, blackhole::consume);
+    }
+
+}
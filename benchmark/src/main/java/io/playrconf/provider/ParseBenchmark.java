@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of handing a multi-megabyte blob to the HOCON
+ * parser: loading it in a String then parsing the String, or streaming it
+ * to the parser as {@link ConfigFileReader#readEntries} does. Both parse
+ * with the options and the includer of the provider.
+ * <p>
+ * Run with {@code -prof gc} to compare the memory allocated per operation
+ * ({@code gc.alloc.rate.norm}). The String path holds the raw blob and its
+ * decoded copy at once, so its peak heap grows with the blob size: lowering
+ * the heap, e.g. {@code -jvmArgs -Xmx64m}, shows the blob size at which
+ * each path starts failing.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    /**
+     * Number of keys in the configuration file, about 55 bytes each.
+     */
+    @Param({"50000", "200000"})
+    public int configKeys;
+
+    /**
+     * How the blob is handed to the parser.
+     */
+    @Param({"string", "stream"})
+    public String source;
+
+    /**
+     * Directory holding the synthetic repository.
+     */
+    private File dir;
+
+    /**
+     * Provider configuration.
+     */
+    private Config config;
+
+    /**
+     * Provider to benchmark.
+     */
+    private GitProvider provider;
+
+    /**
+     * Fetched repository.
+     */
+    private Repository repository;
+
+    /**
+     * Fetched commit.
+     */
+    private RevCommit commit;
+
+    /**
+     * Blob of the configuration file.
+     */
+    private ObjectId blobId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDirectory("play-rconf-git-benchmark").toFile();
+        final String remoteURI = SyntheticRepository.create(new File(this.dir, "remote.git"), 10, 1, this.configKeys);
+        this.config = ConfigFactory.parseString(
+            "uri = \"" + remoteURI + "\"\n"
+                + "filepath = \"" + SyntheticRepository.FILEPATH + "\"\n"
+                + "mode = \"none\"\n"
+                + "fetch.mode = \"in-memory\"\n"
+                + "max-file-size = 1g\n"
+        );
+        this.provider = new GitProvider();
+        this.repository = this.provider.openRepository(this.config, remoteURI, "none");
+        this.commit = this.repository.parseCommit(this.repository.resolve(Constants.HEAD));
+        this.blobId = this.repository.resolve(Constants.HEAD + ":" + SyntheticRepository.FILEPATH);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Workspace.release(this.repository);
+        FileUtils.delete(this.dir, FileUtils.RECURSIVE | FileUtils.RETRY);
+    }
+
+    @Benchmark
+    public Config readAndParse() throws Exception {
+        final ObjectLoader loader = this.repository.open(this.blobId, Constants.OBJ_BLOB);
+        if ("string".equals(this.source)) {
+            return ConfigFactory.parseString(new String(loader.getBytes(), StandardCharsets.UTF_8), this.parseOptions());
+        }
+        try (final Reader reader = new BufferedReader(new InputStreamReader(loader.openStream(), StandardCharsets.UTF_8))) {
+            return ConfigFactory.parseReader(reader, this.parseOptions());
+        }
+    }
+
+    /**
+     * Get the options the provider parses the configuration file with.
+     *
+     * @return Parse options
+     */
+    private ConfigParseOptions parseOptions() {
+        return this.provider.getReader().parseOptions(
+            this.repository,
+            this.commit,
+            SyntheticRepository.FILEPATH,
+            ConfigFileReader.getMaxFileSize(this.config),
+            new HashMap<>(),
+            new LinkedHashMap<>(),
+            BlobFetcher.NONE
+        );
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU bound stages of {@link GitProvider#loadData} once the
+ * repository is fetched in memory: the {@link TreeWalk#forPath} lookup, the
+ * blob read, the HOCON parsing alone, the read path of the provider
+ * streaming the blob to the parser and resolving its includes, and the
+ * per-entry render and emission loop. The parsing uses the options and the
+ * includer of the provider.
+ * <p>
+ * Run with {@code -prof gc} to see the memory allocated per operation.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadBenchmark {
+
+    /**
+     * Number of files in the data directory.
+     */
+    @Param({"10", "1000"})
+    public int fileCount;
+
+    /**
+     * Number of keys in the configuration file.
+     */
+    @Param({"100", "10000", "100000"})
+    public int configKeys;
+
+    /**
+     * Directory holding the synthetic repository.
+     */
+    private File dir;
+
+    /**
+     * URI of the synthetic repository.
+     */
+    private String remoteURI;
+
+    /**
+     * Provider configuration.
+     */
+    private Config config;
+
+    /**
+     * Provider to benchmark.
+     */
+    private GitProvider provider;
+
+    /**
+     * Fetched repository.
+     */
+    private Repository repository;
+
+    /**
+     * Fetched commit.
+     */
+    private RevCommit commit;
+
+    /**
+     * Blob of the configuration file.
+     */
+    private ObjectId blobId;
+
+    /**
+     * Configuration file content.
+     */
+    private String content;
+
+    /**
+     * Parsed configuration.
+     */
+    private Config parsed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDirectory("play-rconf-git-benchmark").toFile();
+        this.remoteURI = SyntheticRepository.create(new File(this.dir, "remote.git"), this.fileCount, 1, this.configKeys);
+        this.config = ConfigFactory.parseString(
+            "uri = \"" + this.remoteURI + "\"\n"
+                + "filepath = \"" + SyntheticRepository.FILEPATH + "\"\n"
+                + "mode = \"none\"\n"
+                + "fetch.mode = \"in-memory\"\n"
+        );
+        this.provider = new GitProvider();
+        this.repository = this.provider.openRepository(this.config, this.remoteURI, "none");
+        this.commit = this.repository.parseCommit(this.repository.resolve(Constants.HEAD));
+        this.blobId = this.lookup();
+        this.content = new String(this.repository.open(this.blobId).getBytes(), StandardCharsets.UTF_8);
+        this.parsed = this.parse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Workspace.release(this.repository);
+        FileUtils.delete(this.dir, FileUtils.RECURSIVE | FileUtils.RETRY);
+    }
+
+    @Benchmark
+    public ObjectId treeWalkLookup() throws Exception {
+        return this.lookup();
+    }
+
+    @Benchmark
+    public byte[] blobRead() throws Exception {
+        return this.repository.open(this.blobId).getBytes();
+    }
+
+    @Benchmark
+    public Config parse() {
+        return ConfigFactory.parseString(
+            this.content,
+            this.provider.getReader().parseOptions(
+                this.repository,
+                this.commit,
+                SyntheticRepository.FILEPATH,
+                ConfigFileReader.getMaxFileSize(this.config),
+                new HashMap<>(),
+                new LinkedHashMap<>(),
+                BlobFetcher.NONE
+            )
+        );
+    }
+
+    @Benchmark
+    public List<ConfigEntry> readEntries() throws Exception {
+        final Map<String, ObjectId> includedFiles = new LinkedHashMap<>();
+        return this.provider.getReader().readEntries(
+            this.repository,
+            this.commit,
+            Collections.singletonMap(SyntheticRepository.FILEPATH, this.blobId),
+            ConfigFileReader.getMaxFileSize(this.config),
+            includedFiles,
+            BlobFetcher.NONE,
+            GitMetricsListener.NOOP,
+            this.remoteURI
+        );
+    }
+
+    @Benchmark
+    public void emit(final Blackhole blackhole) {
+        this.provider.getReader().flatten(this.parsed).forEach(entry -> entry.emit(blackhole::consume, blackhole::consume));
+    }
+
+    /**
+     * Looks up the configuration file in the fetched commit.
+     *
+     * @return Blob id
+     */
+    private ObjectId lookup() throws Exception {
+        try (final TreeWalk walk = TreeWalk.forPath(this.repository, SyntheticRepository.FILEPATH, this.commit.getTree())) {
+            return walk.getObjectId(0);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds synthetic bare repositories used by the benchmarks. The master
+ * branch holds a configuration file and a data directory, and each commit
+ * of the history changes one data file.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class SyntheticRepository {
+
+    /**
+     * Path of the configuration file.
+     */
+    static final String FILEPATH = "conf/application.conf";
+
+    /**
+     * Build a new instance.
+     */
+    private SyntheticRepository() {
+    }
+
+    /**
+     * Creates a bare repository.
+     *
+     * @param dir          Directory of the bare repository
+     * @param fileCount    Number of files in the data directory
+     * @param historyDepth Number of commits
+     * @param configKeys   Number of keys in the configuration file
+     * @return URI of the bare repository
+     */
+    static String create(final File dir, final int fileCount, final int historyDepth, final int configKeys) throws Exception {
+        try (final Git git = Git.init().setBare(true).setDirectory(dir).call();
+             final ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            final Repository repository = git.getRepository();
+            final ObjectId confTree = tree(inserter, "application.conf", blob(inserter, configuration(configKeys)));
+            final ObjectId[] files = new ObjectId[fileCount];
+            for (int i = 0; i < fileCount; ++i) {
+                files[i] = blob(inserter, String.format("payload %d", i));
+            }
+
+            final PersonIdent ident = new PersonIdent("benchmark", "benchmark@localhost");
+            ObjectId parent = null;
+            for (int depth = 0; depth < historyDepth; ++depth) {
+                files[depth % fileCount] = blob(inserter, String.format("payload %d at %d", depth % fileCount, depth));
+                final TreeFormatter dataTree = new TreeFormatter();
+                for (int i = 0; i < fileCount; ++i) {
+                    dataTree.append(String.format("file-%06d.txt", i), FileMode.REGULAR_FILE, files[i]);
+                }
+
+                final TreeFormatter rootTree = new TreeFormatter();
+                rootTree.append("conf", FileMode.TREE, confTree);
+                rootTree.append("data", FileMode.TREE, inserter.insert(dataTree));
+
+                final CommitBuilder commit = new CommitBuilder();
+                commit.setTreeId(inserter.insert(rootTree));
+                if (parent != null) {
+                    commit.setParentId(parent);
+                }
+                commit.setAuthor(ident);
+                commit.setCommitter(ident);
+                commit.setMessage(String.format("Commit %d", depth));
+                parent = inserter.insert(commit);
+            }
+            inserter.flush();
+
+            final RefUpdate refUpdate = repository.updateRef(Constants.R_HEADS + Constants.MASTER);
+            refUpdate.setNewObjectId(parent);
+            refUpdate.forceUpdate();
+        }
+        return dir.toURI().toString();
+    }
+
+    /**
+     * Builds a configuration file content.
+     *
+     * @param configKeys Number of keys
+     * @return Configuration content
+     */
+    static String configuration(final int configKeys) {
+        final StringBuilder sb = new StringBuilder(configKeys * 48);
+        sb.append("application {\n");
+        for (int i = 0; i < configKeys; ++i) {
+            sb.append(String.format("    key-%06d = \"value of the key number %d\"\n", i, i));
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Inserts a blob.
+     *
+     * @param inserter Object inserter
+     * @param content  Blob content
+     * @return Blob id
+     */
+    private static ObjectId blob(final ObjectInserter inserter, final String content) throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Inserts a tree holding a single file.
+     *
+     * @param inserter Object inserter
+     * @param name     File name
+     * @param blobId   File blob
+     * @return Tree id
+     */
+    private static ObjectId tree(final ObjectInserter inserter, final String name, final ObjectId blobId) throws IOException {
+        final TreeFormatter tree = new TreeFormatter();
+        tree.append(name, FileMode.REGULAR_FILE, blobId);
+        return inserter.insert(tree);
+    }
+
+}
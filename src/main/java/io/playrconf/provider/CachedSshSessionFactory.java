@@ -0,0 +1,454 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FtpChannel;
+import org.eclipse.jgit.transport.JschConfigSessionFactory;
+import org.eclipse.jgit.transport.OpenSshConfig;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.SshSessionFactory;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * SSH session factory shared by every load using the same private key. The
+ * key is parsed once per host, and the connected sessions are kept open for
+ * a while, so repeated fetches on the same host skip the SSH handshake.
+ * Sessions are always connected and disconnected outside of any lock,
+ * concurrent loads on different hosts never wait on each other.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class CachedSshSessionFactory extends SshSessionFactory {
+
+    /**
+     * Factories by private key.
+     */
+    private static final ConcurrentMap<String, CachedSshSessionFactory> FACTORIES = new ConcurrentHashMap<>();
+
+    /**
+     * Disconnects the sessions unused for longer than their keep alive.
+     */
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "play-rconf-git-ssh-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates the factories connecting the sessions, one per host.
+     */
+    private final Supplier<SshSessionFactory> connectorSupplier;
+
+    /**
+     * Identifies the private key file version and its password.
+     */
+    private final String identity;
+
+    /**
+     * How long (in nanoseconds) an unused session is kept open.
+     */
+    private final long keepAlive;
+
+    /**
+     * Factories connecting the sessions by user, host and port.
+     */
+    private final ConcurrentMap<String, SshSessionFactory> connectors = new ConcurrentHashMap<>();
+
+    /**
+     * Open sessions by user, host and port.
+     */
+    private final ConcurrentMap<String, PooledSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Build a new instance.
+     *
+     * @param connectorSupplier Creates the factories connecting the sessions, one per host
+     * @param identity          Identifies the private key file version and its password
+     * @param keepAlive         How long (in nanoseconds) an unused session is kept open
+     */
+    CachedSshSessionFactory(final Supplier<SshSessionFactory> connectorSupplier, final String identity, final long keepAlive) {
+        this.connectorSupplier = connectorSupplier;
+        this.identity = identity;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Get the factory to use for the given private key. The factory is
+     * replaced when the key file or its password changes, and the sessions
+     * of the replaced factory are disconnected as soon as they are unused.
+     *
+     * @param privateKey     Path of the private key
+     * @param password       Password of the private key (Optional)
+     * @param keepAlive      How long (in nanoseconds) an unused session is kept open
+     * @param connectTimeout Connection and handshake timeout (in milliseconds), 0 to use the transport timeout
+     * @return The session factory
+     */
+    static CachedSshSessionFactory of(final String privateKey, final String password, final long keepAlive, final int connectTimeout) {
+        final String key = privateKey + "\n" + keepAlive + "\n" + connectTimeout;
+        final String identity = new File(privateKey).lastModified() + "\n" + password;
+        final AtomicReference<CachedSshSessionFactory> replaced = new AtomicReference<>();
+        final CachedSshSessionFactory factory = CachedSshSessionFactory.FACTORIES.compute(key, (k, existing) -> {
+            if (existing != null && existing.identity.equals(identity)) {
+                return existing;
+            }
+            replaced.set(existing);
+            return new CachedSshSessionFactory(() -> new Connector(privateKey, password, connectTimeout), identity, keepAlive);
+        });
+        if (replaced.get() != null) {
+            replaced.get().close();
+        }
+        return factory;
+    }
+
+    /**
+     * Get the type of the sessions created by this factory.
+     *
+     * @return The session type
+     */
+    public String getType() {
+        return "jsch";
+    }
+
+    @Override
+    public RemoteSession getSession(final URIish uri, final CredentialsProvider credentialsProvider,
+                                    final FS fs, final int tms) throws TransportException {
+        final String key = uri.getUser() + "@" + uri.getHost() + ":" + uri.getPort();
+        final SshSessionFactory connector = this.connectors.computeIfAbsent(key, k -> this.connectorSupplier.get());
+        if (this.keepAlive <= 0) {
+            return connector.getSession(uri, credentialsProvider, fs, tms);
+        }
+
+        final PooledSession pooled = this.sessions.get(key);
+        if (pooled != null) {
+            if (pooled.acquire()) {
+                return pooled;
+            }
+            pooled.close();
+        }
+
+        // Connects without holding any lock, then publishes the session
+        // unless a concurrent load published a usable one in the meantime.
+        // The sessions dropped are disconnected once the map is unlocked.
+        final RemoteSession connected = connector.getSession(uri, credentialsProvider, fs, tms);
+        final PooledSession session = new PooledSession(key, connector, connected, uri, credentialsProvider, fs, tms);
+        final AtomicReference<PooledSession> replaced = new AtomicReference<>();
+        final PooledSession published = this.sessions.merge(key, session, (current, candidate) -> {
+            if (current.acquire()) {
+                return current;
+            }
+            replaced.set(current);
+            return candidate;
+        });
+        if (replaced.get() != null) {
+            replaced.get().close();
+        }
+        if (published != session) {
+            connected.disconnect();
+        }
+        return published;
+    }
+
+    /**
+     * Disconnects every pooled session as soon as it is unused.
+     */
+    void close() {
+        this.sessions.values().forEach(PooledSession::close);
+    }
+
+    /**
+     * Connects the sessions of a single host. The identity is parsed once
+     * by JSch and kept for the next connections.
+     */
+    private static final class Connector extends JschConfigSessionFactory {
+
+        /**
+         * Path of the private key.
+         */
+        private final String privateKey;
+
+        /**
+         * Password of the private key (Optional).
+         */
+        private final String password;
+
+        /**
+         * Connection and handshake timeout (in milliseconds), 0 to use the transport timeout.
+         */
+        private final int connectTimeout;
+
+        /**
+         * Build a new instance.
+         *
+         * @param privateKey     Path of the private key
+         * @param password       Password of the private key (Optional)
+         * @param connectTimeout Connection and handshake timeout (in milliseconds), 0 to use the transport timeout
+         */
+        Connector(final String privateKey, final String password, final int connectTimeout) {
+            this.privateKey = privateKey;
+            this.password = password;
+            this.connectTimeout = connectTimeout;
+        }
+
+        @Override
+        protected JSch createDefaultJSch(final FS fs) throws JSchException {
+            final JSch jSch = super.createDefaultJSch(fs);
+            jSch.addIdentity(this.privateKey, this.password);
+            return jSch;
+        }
+
+        @Override
+        protected void configure(final OpenSshConfig.Host hc, final Session session) {
+            // Pooled sessions must not prevent the JVM from exiting
+            session.setDaemonThread(true);
+        }
+
+        @Override
+        public RemoteSession getSession(final URIish uri, final CredentialsProvider credentialsProvider,
+                                        final FS fs, final int tms) throws TransportException {
+            return super.getSession(uri, credentialsProvider, fs, this.connectTimeout > 0 ? this.connectTimeout : tms);
+        }
+
+    }
+
+    /**
+     * A session kept open between two uses. The underlying session is
+     * disconnected once it has been unused for longer than the keep alive.
+     */
+    private final class PooledSession implements RemoteSession {
+
+        /**
+         * User, host and port of the session.
+         */
+        private final String key;
+
+        /**
+         * Factory connecting the session.
+         */
+        private final SshSessionFactory connector;
+
+        /**
+         * Remote URI.
+         */
+        private final URIish uri;
+
+        /**
+         * Credentials provider.
+         */
+        private final CredentialsProvider credentialsProvider;
+
+        /**
+         * File system abstraction.
+         */
+        private final FS fs;
+
+        /**
+         * Connection timeout (in milliseconds).
+         */
+        private final int tms;
+
+        /**
+         * Underlying session.
+         */
+        private RemoteSession delegate;
+
+        /**
+         * Number of transports currently using this session, starting with its creator.
+         */
+        private int users = 1;
+
+        /**
+         * Last time (in nanoseconds) this session was released.
+         */
+        private long lastUsed;
+
+        /**
+         * Whether this session must not be used anymore.
+         */
+        private boolean closed;
+
+        /**
+         * Build a new instance, used by its creator.
+         *
+         * @param key                 User, host and port of the session
+         * @param connector           Factory connecting the session
+         * @param delegate            Underlying session
+         * @param uri                 Remote URI
+         * @param credentialsProvider Credentials provider
+         * @param fs                  File system abstraction
+         * @param tms                 Connection timeout (in milliseconds)
+         */
+        PooledSession(final String key, final SshSessionFactory connector, final RemoteSession delegate, final URIish uri,
+                      final CredentialsProvider credentialsProvider, final FS fs, final int tms) {
+            this.key = key;
+            this.connector = connector;
+            this.delegate = delegate;
+            this.uri = uri;
+            this.credentialsProvider = credentialsProvider;
+            this.fs = fs;
+            this.tms = tms;
+            this.lastUsed = System.nanoTime();
+        }
+
+        /**
+         * Marks this session as used. An expired session is left to be
+         * closed by the caller, outside of any lock.
+         *
+         * @return {@code false} if the session expired and must not be used anymore
+         */
+        synchronized boolean acquire() {
+            if (this.closed || this.isExpired()) {
+                return false;
+            }
+            this.users += 1;
+            return true;
+        }
+
+        @Override
+        public Process exec(final String commandName, final int timeout) throws IOException {
+            final RemoteSession current = this.getDelegate();
+            try {
+                return current.exec(commandName, timeout);
+            } catch (final IOException ignore) {
+                // The server may have closed the connection, reconnect once
+                // without holding any lock
+                current.disconnect();
+                final RemoteSession reconnected = this.connector.getSession(this.uri, this.credentialsProvider, this.fs, this.tms);
+                return this.replaceDelegate(current, reconnected).exec(commandName, timeout);
+            }
+        }
+
+        @Override
+        public FtpChannel getFtpChannel() {
+            return this.getDelegate().getFtpChannel();
+        }
+
+        @Override
+        public void disconnect() {
+            final RemoteSession unused;
+            synchronized (this) {
+                this.users -= 1;
+                this.lastUsed = System.nanoTime();
+                if (this.users > 0) {
+                    return;
+                }
+                if (!this.closed) {
+                    CachedSshSessionFactory.REAPER.schedule(this::expire, CachedSshSessionFactory.this.keepAlive, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                unused = this.delegate;
+            }
+            unused.disconnect();
+        }
+
+        /**
+         * Prevents any new use of this session, and disconnects it as soon
+         * as it is unused.
+         */
+        void close() {
+            final RemoteSession unused;
+            synchronized (this) {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+                if (this.users > 0) {
+                    return;
+                }
+                unused = this.delegate;
+            }
+            unused.disconnect();
+        }
+
+        /**
+         * Tells if this session has been unused for longer than the keep alive.
+         *
+         * @return {@code true} if the session expired
+         */
+        private synchronized boolean isExpired() {
+            return this.users == 0 && System.nanoTime() - this.lastUsed >= CachedSshSessionFactory.this.keepAlive;
+        }
+
+        /**
+         * Get the underlying session.
+         *
+         * @return The underlying session
+         */
+        private synchronized RemoteSession getDelegate() {
+            return this.delegate;
+        }
+
+        /**
+         * Replaces the underlying session after a reconnection. The new
+         * session is dropped if a concurrent use already reconnected.
+         *
+         * @param current     Underlying session which failed
+         * @param reconnected Newly connected session
+         * @return The underlying session to use
+         */
+        private RemoteSession replaceDelegate(final RemoteSession current, final RemoteSession reconnected) {
+            final RemoteSession replacement;
+            synchronized (this) {
+                if (this.delegate == current) {
+                    this.delegate = reconnected;
+                    return reconnected;
+                }
+                replacement = this.delegate;
+            }
+            reconnected.disconnect();
+            return replacement;
+        }
+
+        /**
+         * Disconnects this session if it has been unused for longer than
+         * the keep alive, and removes it from the pool.
+         */
+        private void expire() {
+            if (!this.isExpired()) {
+                return;
+            }
+            // Can't be acquired anymore once expired
+            this.close();
+            CachedSshSessionFactory.this.sessions.remove(this.key, this);
+        }
+
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigIncludeContext;
+import com.typesafe.config.ConfigIncluder;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigParseOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Resolves the HOCON includes from the commit tree the including file was
+ * read from. A relative path is resolved against the directory of the
+ * including file, an absolute path against the root of the tree. Each
+ * included file is read and parsed once per commit. Includes that are not
+ * in the tree, such as {@code classpath(...)} or {@code url(...)}, are left
+ * to the default includer. A path missing from the tree is still recorded,
+ * with {@link ObjectId#zeroId()} as blob id, so adding it later is noticed.
+ * The blobs missing from a partially fetched repository are fetched on
+ * demand.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class CommitTreeIncluder implements ConfigIncluder {
+
+    /**
+     * Repository ref.
+     */
+    private final Repository repository;
+
+    /**
+     * Commit the files are read from.
+     */
+    private final RevCommit commit;
+
+    /**
+     * Path of the including file.
+     */
+    private final String path;
+
+    /**
+     * Maximum size of an included file in bytes.
+     */
+    private final long maxFileSize;
+
+    /**
+     * Already parsed included files by path.
+     */
+    private final Map<String, ConfigObject> parsedFiles;
+
+    /**
+     * Receives the blob ids of the included files by path, zero for the missing ones.
+     */
+    private final Map<String, ObjectId> includedFiles;
+
+    /**
+     * Fetches the included blobs missing from the repository.
+     */
+    private final BlobFetcher blobFetcher;
+
+    /**
+     * Includer used for the includes not found in the tree (Optional).
+     */
+    private final ConfigIncluder fallback;
+
+    /**
+     * Build a new instance.
+     *
+     * @param repository    Repository ref
+     * @param commit        Commit the files are read from
+     * @param path          Path of the including file
+     * @param maxFileSize   Maximum size of an included file in bytes
+     * @param parsedFiles   Already parsed included files by path
+     * @param includedFiles Receives the blob ids of the included files by path, zero for the missing ones
+     * @param blobFetcher   Fetches the included blobs missing from the repository
+     * @param fallback      Includer used for the includes not found in the tree (Optional)
+     */
+    CommitTreeIncluder(final Repository repository,
+                       final RevCommit commit,
+                       final String path,
+                       final long maxFileSize,
+                       final Map<String, ConfigObject> parsedFiles,
+                       final Map<String, ObjectId> includedFiles,
+                       final BlobFetcher blobFetcher,
+                       final ConfigIncluder fallback) {
+        this.repository = repository;
+        this.commit = commit;
+        this.path = path;
+        this.maxFileSize = maxFileSize;
+        this.parsedFiles = parsedFiles;
+        this.includedFiles = includedFiles;
+        this.blobFetcher = blobFetcher;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Resolves an included path against the path of the including file.
+     *
+     * @param basePath Path of the including file
+     * @param what     Included path
+     * @return Path in the tree, or {@code null} if it goes above the root
+     */
+    private static String resolve(final String basePath, final String what) {
+        final Deque<String> segments = new ArrayDeque<>();
+        if (!what.startsWith("/")) {
+            final String[] baseSegments = basePath.split("/");
+            for (int i = 0; i < baseSegments.length - 1; ++i) {
+                segments.addLast(baseSegments[i]);
+            }
+        }
+        for (final String segment : what.split("/")) {
+            if ("..".equals(segment)) {
+                if (segments.pollLast() == null) {
+                    return null;
+                }
+            } else if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.addLast(segment);
+            }
+        }
+        return segments.isEmpty() ? null : String.join("/", segments);
+    }
+
+    @Override
+    public ConfigIncluder withFallback(final ConfigIncluder includer) {
+        if (this.fallback == includer) {
+            return this;
+        }
+        return new CommitTreeIncluder(
+            this.repository,
+            this.commit,
+            this.path,
+            this.maxFileSize,
+            this.parsedFiles,
+            this.includedFiles,
+            this.blobFetcher,
+            this.fallback == null ? includer : this.fallback.withFallback(includer)
+        );
+    }
+
+    @Override
+    public ConfigObject include(final ConfigIncludeContext context, final String what) {
+        final String includedPath = resolve(this.path, what);
+        final ConfigObject parsedFile = includedPath == null ? null : this.parsedFiles.get(includedPath);
+        if (parsedFile != null) {
+            return parsedFile;
+        }
+
+        try {
+            final ObjectId blobId = includedPath == null ? null : this.findBlob(includedPath);
+            if (blobId == null) {
+                if (includedPath != null) {
+                    this.includedFiles.putIfAbsent(includedPath, ObjectId.zeroId());
+                }
+                return this.fallback == null ? ConfigFactory.empty().root() : this.fallback.include(context, what);
+            }
+
+            if (!this.repository.getObjectDatabase().has(blobId)) {
+                // Partially fetched repository
+                this.blobFetcher.fetch(Collections.singletonList(blobId));
+            }
+            final ObjectLoader loader = this.repository.open(blobId, Constants.OBJ_BLOB);
+            if (loader.getSize() > this.maxFileSize) {
+                throw new ConfigException.BadValue(
+                    "max-file-size",
+                    String.format("Filepath (%s) is %d bytes long, the limit is %d bytes.", includedPath, loader.getSize(), this.maxFileSize)
+                );
+            }
+
+            final ConfigParseOptions parseOptions = context.parseOptions()
+                .setOriginDescription(includedPath)
+                .setIncluder(new CommitTreeIncluder(
+                    this.repository,
+                    this.commit,
+                    includedPath,
+                    this.maxFileSize,
+                    this.parsedFiles,
+                    this.includedFiles,
+                    this.blobFetcher,
+                    this.fallback
+                ));
+            try (final Reader reader = new BufferedReader(new InputStreamReader(loader.openStream(), StandardCharsets.UTF_8))) {
+                final ConfigObject included = ConfigFactory.parseReader(reader, parseOptions).root();
+                this.includedFiles.put(includedPath, blobId.copy());
+                this.parsedFiles.put(includedPath, included);
+                return included;
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (final GitAPIException ex) {
+            throw new JGitInternalException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Finds a blob in the commit tree.
+     *
+     * @param blobPath Path in the tree
+     * @return Blob id, or {@code null} if there is no file at this path
+     */
+    private ObjectId findBlob(final String blobPath) throws IOException {
+        try (final TreeWalk walk = TreeWalk.forPath(this.repository, blobPath, this.commit.getTree())) {
+            if (walk == null || (walk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) {
+                return null;
+            }
+            return walk.getObjectId(0);
+        }
+    }
+
+}
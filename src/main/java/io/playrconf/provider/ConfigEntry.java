@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import io.playrconf.sdk.FileCfgObject;
+import io.playrconf.sdk.KeyValueCfgObject;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A flattened remote configuration entry. The value is already rendered
+ * and classified as file or key/value.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class ConfigEntry {
+
+    /**
+     * Prefix of the file values.
+     */
+    private static final String FILE_PREFIX = "<FILE>";
+
+    /**
+     * Prefix of the file content pointing to another file of the commit.
+     */
+    private static final String REFERENCE_PREFIX = "git:";
+
+    /**
+     * Configuration key.
+     */
+    private final String key;
+
+    /**
+     * Rendered value.
+     */
+    private final String value;
+
+    /**
+     * Is the value a file?
+     */
+    private final boolean file;
+
+    /**
+     * Build a new instance.
+     *
+     * @param key   Configuration key
+     * @param value Rendered value
+     * @param file  Is the value a file?
+     */
+    ConfigEntry(final String key, final String value, final boolean file) {
+        this.key = key;
+        this.value = value;
+        this.file = file;
+    }
+
+    /**
+     * Get the configuration key.
+     *
+     * @return Configuration key
+     */
+    String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Get the rendered value.
+     *
+     * @return Rendered value
+     */
+    String getValue() {
+        return this.value;
+    }
+
+    /**
+     * Is the value a file?
+     *
+     * @return {@code true} if the value is a file
+     */
+    boolean isFile() {
+        return this.file;
+    }
+
+    /**
+     * Get the path of the file to write, if the value is a file.
+     *
+     * @return Target path, or {@code null} if the value is not a file
+     */
+    String getTargetPath() {
+        final String[] parts = splitFileValue(this.value);
+        return parts == null ? null : parts[0];
+    }
+
+    /**
+     * Get the path, in the commit, of the file holding the content. A file
+     * value can point to another file of the commit with
+     * {@code <FILE>target;git:path/in/commit} instead of embedding the
+     * content in Base64.
+     *
+     * @return Path in the commit, or {@code null} if the value is not a reference
+     */
+    String getReferencedPath() {
+        final String[] parts = splitFileValue(this.value);
+        return parts == null || !parts[1].startsWith(REFERENCE_PREFIX)
+            ? null : parts[1].substring(REFERENCE_PREFIX.length()).replaceFirst("^/+", "");
+    }
+
+    /**
+     * Tells if a rendered value points to another file of the commit.
+     *
+     * @param value Rendered value
+     * @return {@code true} if the value is a reference
+     */
+    static boolean isReference(final String value) {
+        final String[] parts = splitFileValue(value);
+        return parts != null && parts[1].startsWith(REFERENCE_PREFIX);
+    }
+
+    /**
+     * Splits a rendered file value into its target path and its content.
+     *
+     * @param value Rendered value
+     * @return Target path and content, or {@code null} if the value is not a file
+     */
+    private static String[] splitFileValue(final String value) {
+        final String unquoted = value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")
+            ? value.substring(1, value.length() - 1) : value;
+        final int separator = unquoted.indexOf(';');
+        if (!unquoted.startsWith(FILE_PREFIX) || separator < 0) {
+            return null;
+        }
+        return new String[]{unquoted.substring(FILE_PREFIX.length(), separator), unquoted.substring(separator + 1)};
+    }
+
+    /**
+     * Emits this entry to the right consumer. Referenced files are not
+     * emitted, their content is written by the provider.
+     *
+     * @param kvObjConsumer   Key/value consumer
+     * @param fileObjConsumer File consumer
+     */
+    void emit(final Consumer<KeyValueCfgObject> kvObjConsumer, final Consumer<FileCfgObject> fileObjConsumer) {
+        if (this.file) {
+            if (this.getReferencedPath() == null) {
+                fileObjConsumer.accept(new FileCfgObject(this.key, this.value));
+            }
+        } else {
+            kvObjConsumer.accept(new KeyValueCfgObject(this.key, this.value));
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || this.getClass() != o.getClass()) {
+            return false;
+        }
+        final ConfigEntry that = (ConfigEntry) o;
+        return this.file == that.file
+            && Objects.equals(this.key, that.key)
+            && Objects.equals(this.value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.key, this.value, this.file);
+    }
+
+}
@@ -0,0 +1,406 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigValueType;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Reads the configuration files from a commit tree. Files are located with
+ * a single tree walk, parsed and merged in the declared order: a file takes
+ * precedence over the files declared before it.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class ConfigFileReader {
+
+    /**
+     * Characters starting a glob pattern.
+     */
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    /**
+     * Default maximum size of a configuration file in bytes.
+     */
+    private static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+
+    /**
+     * Tells if a rendered value is a file.
+     */
+    private final Predicate<String> fileDetector;
+
+    /**
+     * Build a new instance.
+     *
+     * @param fileDetector Tells if a rendered value is a file
+     */
+    ConfigFileReader(final Predicate<String> fileDetector) {
+        this.fileDetector = fileDetector;
+    }
+
+    /**
+     * Get the configured file paths. The {@code filepath} key accepts a
+     * single path or a list of paths, each one can be a glob pattern.
+     *
+     * @param config Config file
+     * @return File paths or glob patterns, empty if none are set
+     */
+    static List<String> getFilepaths(final Config config) {
+        final List<String> filepaths = new ArrayList<>();
+        if (config.hasPath("filepath")) {
+            final List<String> values = config.getValue("filepath").valueType() == ConfigValueType.LIST
+                ? config.getStringList("filepath")
+                : Collections.singletonList(config.getString("filepath"));
+            for (final String value : values) {
+                final String filepath = value.trim().replaceFirst("^/+", "");
+                if (!filepath.isEmpty()) {
+                    filepaths.add(filepath);
+                }
+            }
+        }
+        return filepaths;
+    }
+
+    /**
+     * Get the maximum size of a configuration file.
+     *
+     * @param config Config file
+     * @return Size in bytes
+     */
+    static long getMaxFileSize(final Config config) {
+        return config.hasPath("max-file-size") ? config.getBytes("max-file-size") : DEFAULT_MAX_FILE_SIZE;
+    }
+
+    /**
+     * Locates the configuration files in the commit tree.
+     *
+     * @param repository Repository ref
+     * @param commit     Commit to read
+     * @param filepaths  File paths or glob patterns
+     * @return Blob ids by path, in merge order
+     */
+    Map<String, ObjectId> findFiles(final Repository repository, final RevCommit commit, final List<String> filepaths) throws IOException {
+        final List<PathMatcher> matchers = matchersOf(filepaths);
+        final List<Map<String, ObjectId>> matches = new ArrayList<>(filepaths.size());
+        for (int i = 0; i < filepaths.size(); ++i) {
+            matches.add(new LinkedHashMap<>());
+        }
+
+        try (final TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            final TreeFilter prefixFilter = prefixFilterOf(filepaths);
+            if (prefixFilter != null) {
+                // Only walk the subtrees that may contain the files
+                walk.setFilter(prefixFilter);
+            }
+            while (walk.next()) {
+                final String path = walk.getPathString();
+                for (int i = 0; i < filepaths.size(); ++i) {
+                    if (matches(matchers.get(i), filepaths.get(i), path)) {
+                        matches.get(i).put(path, walk.getObjectId(0));
+                    }
+                }
+            }
+        }
+
+        final Map<String, ObjectId> files = new LinkedHashMap<>();
+        for (int i = 0; i < filepaths.size(); ++i) {
+            if (matches.get(i).isEmpty()) {
+                throw new IllegalArgumentException(String.format("Filepath (%s) not found.", filepaths.get(i)));
+            }
+            matches.get(i).forEach((path, blobId) -> {
+                files.remove(path);
+                files.put(path, blobId);
+            });
+        }
+        return files;
+    }
+
+    /**
+     * Tells if a configuration file was added, modified or removed between
+     * two commits. Subtrees having the same id in both commits are skipped
+     * without being walked.
+     *
+     * @param repository Repository ref
+     * @param previous   Previous commit
+     * @param commit     New commit
+     * @param filepaths  File paths or glob patterns
+     * @return {@code true} if at least one configuration file differs
+     */
+    boolean hasChanges(final Repository repository,
+                       final RevCommit previous,
+                       final RevCommit commit,
+                       final List<String> filepaths) throws IOException {
+        final List<PathMatcher> matchers = matchersOf(filepaths);
+        try (final TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(previous.getTree());
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            final TreeFilter prefixFilter = prefixFilterOf(filepaths);
+            walk.setFilter(prefixFilter == null ? TreeFilter.ANY_DIFF : AndTreeFilter.create(prefixFilter, TreeFilter.ANY_DIFF));
+            while (walk.next()) {
+                final String path = walk.getPathString();
+                for (int i = 0; i < filepaths.size(); ++i) {
+                    if (matches(matchers.get(i), filepaths.get(i), path)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Locates the included files in the commit tree. Unlike
+     * {@link #findFiles(Repository, RevCommit, List)}, missing files are
+     * mapped to {@link ObjectId#zeroId()}, as recorded by the includer.
+     *
+     * @param repository Repository ref
+     * @param commit     Commit to read
+     * @param paths      File paths
+     * @return Blob ids by path, zero for the missing files
+     */
+    Map<String, ObjectId> findIncludedFiles(final Repository repository,
+                                            final RevCommit commit,
+                                            final Collection<String> paths) throws IOException {
+        final Map<String, ObjectId> files = new LinkedHashMap<>();
+        if (paths.isEmpty()) {
+            return files;
+        }
+        paths.forEach(path -> files.put(path, ObjectId.zeroId()));
+
+        try (final TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(PathFilterGroup.createFromStrings(paths));
+            while (walk.next()) {
+                if (files.containsKey(walk.getPathString()) && (walk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+                    files.put(walk.getPathString(), walk.getObjectId(0));
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Parses and merges the configuration files, then flattens the result.
+     * Blobs are streamed to the parser, they are never fully loaded in memory.
+     * Includes are resolved from the same commit tree.
+     *
+     * @param repository      Repository ref
+     * @param commit          Commit the files are read from
+     * @param files           Blob ids by path, in merge order
+     * @param maxFileSize     Maximum size of a configuration file in bytes
+     * @param includedFiles   Receives the blob ids of the included files by path, zero for the missing ones
+     * @param blobFetcher     Fetches the included blobs missing from the repository
+     * @param metricsListener Listener receiving the read and parse metrics
+     * @param repositoryURI   Repository URI reported to the listener
+     * @return Flattened entries
+     */
+    List<ConfigEntry> readEntries(final Repository repository,
+                                  final RevCommit commit,
+                                  final Map<String, ObjectId> files,
+                                  final long maxFileSize,
+                                  final Map<String, ObjectId> includedFiles,
+                                  final BlobFetcher blobFetcher,
+                                  final GitMetricsListener metricsListener,
+                                  final String repositoryURI) throws IOException {
+        final Map<String, ConfigObject> parsedFiles = new HashMap<>();
+        long parseTime = 0;
+        Config remoteConfig = ConfigFactory.empty();
+        for (final Map.Entry<String, ObjectId> file : files.entrySet()) {
+            final long readStartTime = System.nanoTime();
+            final ObjectLoader loader = repository.open(file.getValue(), Constants.OBJ_BLOB);
+            if (loader.getSize() > maxFileSize) {
+                throw new ConfigException.BadValue(
+                    "max-file-size",
+                    String.format("Filepath (%s) is %d bytes long, the limit is %d bytes.", file.getKey(), loader.getSize(), maxFileSize)
+                );
+            }
+            final long parseStartTime = System.nanoTime();
+            metricsListener.onRead(repositoryURI, file.getKey(), parseStartTime - readStartTime, loader.getSize());
+
+            final ConfigParseOptions parseOptions = this.parseOptions(
+                repository,
+                commit,
+                file.getKey(),
+                maxFileSize,
+                parsedFiles,
+                includedFiles,
+                blobFetcher
+            );
+            try (final Reader reader = new BufferedReader(new InputStreamReader(loader.openStream(), StandardCharsets.UTF_8))) {
+                remoteConfig = ConfigFactory.parseReader(reader, parseOptions).withFallback(remoteConfig);
+            } catch (final UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            parseTime += System.nanoTime() - parseStartTime;
+        }
+
+        final long flattenStartTime = System.nanoTime();
+        final List<ConfigEntry> entries = this.flatten(remoteConfig);
+        metricsListener.onParse(repositoryURI, parseTime + System.nanoTime() - flattenStartTime, entries.size());
+        return entries;
+    }
+
+    /**
+     * Get the options used to parse a configuration file. Its includes are
+     * resolved from the commit tree.
+     *
+     * @param repository    Repository ref
+     * @param commit        Commit the file is read from
+     * @param path          Path of the file
+     * @param maxFileSize   Maximum size of an included file in bytes
+     * @param parsedFiles   Already parsed included files by path
+     * @param includedFiles Receives the blob ids of the included files by path, zero for the missing ones
+     * @param blobFetcher   Fetches the included blobs missing from the repository
+     * @return Parse options
+     */
+    ConfigParseOptions parseOptions(final Repository repository,
+                                    final RevCommit commit,
+                                    final String path,
+                                    final long maxFileSize,
+                                    final Map<String, ConfigObject> parsedFiles,
+                                    final Map<String, ObjectId> includedFiles,
+                                    final BlobFetcher blobFetcher) {
+        return ConfigParseOptions
+            .defaults()
+            .setOriginDescription("play-rconf")
+            .setAllowMissing(false)
+            .setIncluder(new CommitTreeIncluder(repository, commit, path, maxFileSize, parsedFiles, includedFiles, blobFetcher, null));
+    }
+
+    /**
+     * Flattens a configuration.
+     *
+     * @param remoteConfig Parsed configuration
+     * @return Flattened entries
+     */
+    List<ConfigEntry> flatten(final Config remoteConfig) {
+        final List<ConfigEntry> entries = new ArrayList<>();
+        remoteConfig.entrySet().forEach(entry -> {
+            final String value = entry.getValue().render();
+            entries.add(new ConfigEntry(entry.getKey(), value, ConfigEntry.isReference(value) || this.fileDetector.test(value)));
+        });
+        return entries;
+    }
+
+    /**
+     * Builds the matchers of the glob patterns.
+     *
+     * @param filepaths File paths or glob patterns
+     * @return Matchers, {@code null} for the paths that are not glob patterns
+     */
+    private static List<PathMatcher> matchersOf(final List<String> filepaths) {
+        final List<PathMatcher> matchers = new ArrayList<>(filepaths.size());
+        for (final String filepath : filepaths) {
+            matchers.add(prefixOf(filepath).equals(filepath) ? null : FileSystems.getDefault().getPathMatcher("glob:" + filepath));
+        }
+        return matchers;
+    }
+
+    /**
+     * Builds the filter restricting a tree walk to the subtrees that may
+     * contain the files.
+     *
+     * @param filepaths File paths or glob patterns
+     * @return The filter, {@code null} if the whole tree must be walked
+     */
+    private static TreeFilter prefixFilterOf(final List<String> filepaths) {
+        final List<String> prefixes = new ArrayList<>(filepaths.size());
+        for (final String filepath : filepaths) {
+            prefixes.add(prefixOf(filepath));
+        }
+        return prefixes.contains("") ? null : PathFilterGroup.createFromStrings(prefixes);
+    }
+
+    /**
+     * Tells if a path matches a file path or glob pattern.
+     *
+     * @param matcher  Glob matcher, {@code null} if the file path is not a glob pattern
+     * @param filepath File path or glob pattern
+     * @param path     Path to test
+     * @return {@code true} if the path matches
+     */
+    private static boolean matches(final PathMatcher matcher, final String filepath, final String path) {
+        return matcher == null ? path.equals(filepath) : matcher.matches(Paths.get(path));
+    }
+
+    /**
+     * Get the directory part of a path preceding any glob character.
+     *
+     * @param filepath File path or glob pattern
+     * @return The path itself if it is not a glob pattern
+     */
+    private static String prefixOf(final String filepath) {
+        int end = filepath.length();
+        for (final char c : GLOB_CHARACTERS.toCharArray()) {
+            final int index = filepath.indexOf(c);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        if (end == filepath.length()) {
+            return filepath;
+        }
+
+        final int slash = filepath.lastIndexOf('/', end);
+        return slash <= 0 ? "" : filepath.substring(0, slash);
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Already parsed remote configuration stored on the local disk, along with
+ * the id of the Git object it was read from.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class ConfigSnapshot {
+
+    /**
+     * Magic number starting every snapshot file.
+     */
+    private static final int MAGIC = 0x52434647;
+
+    /**
+     * Version of the snapshot file format.
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Id of the Git object the entries were read from.
+     */
+    private final ObjectId objectId;
+
+    /**
+     * Flattened entries.
+     */
+    private final List<ConfigEntry> entries;
+
+    /**
+     * Blob ids of the included files by path.
+     */
+    private final Map<String, ObjectId> includedFiles;
+
+    /**
+     * Build a new instance.
+     *
+     * @param objectId      Id of the Git object the entries were read from
+     * @param entries       Flattened entries
+     * @param includedFiles Blob ids of the included files by path
+     */
+    ConfigSnapshot(final ObjectId objectId, final List<ConfigEntry> entries, final Map<String, ObjectId> includedFiles) {
+        this.objectId = objectId.copy();
+        this.entries = Collections.unmodifiableList(entries);
+        this.includedFiles = Collections.unmodifiableMap(new LinkedHashMap<>(includedFiles));
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * Truncated or corrupted files are deleted.
+     *
+     * @param file Snapshot file
+     * @return The snapshot, or {@code null} if the file doesn't exist or is not readable
+     */
+    static ConfigSnapshot read(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        // No size read from the file can exceed its length
+        final long limit = file.length();
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != ConfigSnapshot.MAGIC || in.readInt() != ConfigSnapshot.FORMAT_VERSION) {
+                return null;
+            }
+
+            final byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+            in.readFully(rawId);
+            final int size = readSize(in, limit);
+            final List<ConfigEntry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                final String key = readString(in, limit);
+                final String value = readString(in, limit);
+                entries.add(new ConfigEntry(key, value, in.readBoolean()));
+            }
+            final int includedSize = readSize(in, limit);
+            final Map<String, ObjectId> includedFiles = new LinkedHashMap<>();
+            for (int i = 0; i < includedSize; ++i) {
+                final String path = readString(in, limit);
+                final byte[] rawBlobId = new byte[Constants.OBJECT_ID_LENGTH];
+                in.readFully(rawBlobId);
+                includedFiles.put(path, ObjectId.fromRaw(rawBlobId));
+            }
+            return new ConfigSnapshot(ObjectId.fromRaw(rawId), entries, includedFiles);
+        } catch (final IOException | RuntimeException ignore) {
+            // Truncated or corrupted, written again by the next loading
+        }
+
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (final IOException ignore) {
+            // Overwritten by the next loading
+        }
+        return null;
+    }
+
+    /**
+     * Reads a size or a length.
+     *
+     * @param in    Input stream
+     * @param limit Maximum value
+     * @return The size
+     */
+    private static int readSize(final DataInputStream in, final long limit) throws IOException {
+        final int size = in.readInt();
+        if (size < 0 || size > limit) {
+            throw new IOException(String.format("Invalid size (%d).", size));
+        }
+        return size;
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string.
+     *
+     * @param in    Input stream
+     * @param limit Maximum length
+     * @return The string
+     */
+    private static String readString(final DataInputStream in, final long limit) throws IOException {
+        final byte[] bytes = new byte[readSize(in, limit)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string.
+     *
+     * @param out   Output stream
+     * @param value The string
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Get the id of the Git object the entries were read from.
+     *
+     * @return Object id
+     */
+    ObjectId getObjectId() {
+        return this.objectId;
+    }
+
+    /**
+     * Get the flattened entries.
+     *
+     * @return Entries
+     */
+    List<ConfigEntry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Get the blob ids of the files included by the configuration.
+     *
+     * @return Blob ids by path
+     */
+    Map<String, ObjectId> getIncludedFiles() {
+        return this.includedFiles;
+    }
+
+    /**
+     * Writes this snapshot. The file is replaced atomically, so concurrent
+     * readers never see a partially written snapshot.
+     *
+     * @param file Snapshot file
+     */
+    void write(final File file) throws IOException {
+        final Path target = file.toPath();
+        Files.createDirectories(target.getParent());
+        final Path tmp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(ConfigSnapshot.MAGIC);
+            out.writeInt(ConfigSnapshot.FORMAT_VERSION);
+            this.objectId.copyRawTo(out);
+            out.writeInt(this.entries.size());
+            for (final ConfigEntry entry : this.entries) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+                out.writeBoolean(entry.isFile());
+            }
+            out.writeInt(this.includedFiles.size());
+            for (final Map.Entry<String, ObjectId> includedFile : this.includedFiles.entrySet()) {
+                writeString(out, includedFile.getKey());
+                includedFile.getValue().copyRawTo(out);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import io.playrconf.sdk.FileCfgObject;
+import io.playrconf.sdk.KeyValueCfgObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keys added, changed or removed between two revisions of the remote
+ * configuration.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+public final class GitConfigChange {
+
+    /**
+     * Commit id the previous configuration was read from.
+     */
+    private final String previousCommitId;
+
+    /**
+     * Commit id the new configuration was read from.
+     */
+    private final String commitId;
+
+    /**
+     * Added or changed entries.
+     */
+    private final Map<String, ConfigEntry> changed;
+
+    /**
+     * Removed keys.
+     */
+    private final Set<String> removed;
+
+    /**
+     * Build a new instance.
+     *
+     * @param previousCommitId Commit id the previous configuration was read from
+     * @param commitId         Commit id the new configuration was read from
+     * @param changed          Added or changed entries
+     * @param removed          Removed keys
+     */
+    private GitConfigChange(final String previousCommitId,
+                            final String commitId,
+                            final Map<String, ConfigEntry> changed,
+                            final Set<String> removed) {
+        this.previousCommitId = previousCommitId;
+        this.commitId = commitId;
+        this.changed = Collections.unmodifiableMap(changed);
+        this.removed = Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * Computes the key level differences between two flattened configurations.
+     *
+     * @param previousCommitId Commit id the previous configuration was read from
+     * @param previous         Previous entries by key
+     * @param commitId         Commit id the new configuration was read from
+     * @param current          New entries by key
+     * @return The change
+     */
+    static GitConfigChange between(final String previousCommitId,
+                                   final Map<String, ConfigEntry> previous,
+                                   final String commitId,
+                                   final Map<String, ConfigEntry> current) {
+        final Map<String, ConfigEntry> changed = new LinkedHashMap<>();
+        current.forEach((key, entry) -> {
+            if (!Objects.equals(previous.get(key), entry)) {
+                changed.put(key, entry);
+            }
+        });
+
+        final Set<String> removed = new LinkedHashSet<>(previous.keySet());
+        removed.removeAll(current.keySet());
+        return new GitConfigChange(previousCommitId, commitId, changed, removed);
+    }
+
+    /**
+     * Get the commit id the previous configuration was read from.
+     *
+     * @return Commit id, or {@code null} if there is no previous configuration
+     */
+    public String getPreviousCommitId() {
+        return this.previousCommitId;
+    }
+
+    /**
+     * Get the commit id the new configuration was read from.
+     *
+     * @return Commit id
+     */
+    public String getCommitId() {
+        return this.commitId;
+    }
+
+    /**
+     * Get the keys added or whose value changed.
+     *
+     * @return Keys
+     */
+    public Set<String> getChangedKeys() {
+        return this.changed.keySet();
+    }
+
+    /**
+     * Get the keys removed from the configuration.
+     *
+     * @return Keys
+     */
+    public Set<String> getRemovedKeys() {
+        return this.removed;
+    }
+
+    /**
+     * Is there any difference?
+     *
+     * @return {@code true} if no key was added, changed or removed
+     */
+    public boolean isEmpty() {
+        return this.changed.isEmpty() && this.removed.isEmpty();
+    }
+
+    /**
+     * Emits the added or changed entries.
+     *
+     * @param kvObjConsumer   Key/value consumer
+     * @param fileObjConsumer File consumer
+     */
+    public void apply(final Consumer<KeyValueCfgObject> kvObjConsumer, final Consumer<FileCfgObject> fileObjConsumer) {
+        this.changed.values().forEach(entry -> entry.emit(kvObjConsumer, fileObjConsumer));
+    }
+
+}
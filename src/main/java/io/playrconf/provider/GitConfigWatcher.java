@@ -0,0 +1,373 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Polls the remote Git repository and notifies the registered listeners
+ * with the keys that changed. The target ref is incrementally fetched into a
+ * repository kept in memory, and the configuration files are only parsed
+ * again when one of their blobs changed.
+ * <p>
+ * The first poll only records the current configuration, listeners are
+ * notified from the next change onwards. Failed polls are retried with an
+ * exponential backoff.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+public final class GitConfigWatcher implements Closeable {
+
+    /**
+     * Provider used to fetch and parse the remote configuration.
+     */
+    private final GitProvider provider;
+
+    /**
+     * Provider configuration.
+     */
+    private final Config config;
+
+    /**
+     * Repository URI using HTTPS or SSH.
+     */
+    private final String repositoryURI;
+
+    /**
+     * Paths to retrieve the config content.
+     */
+    private final List<String> filepaths;
+
+    /**
+     * Auth mode.
+     */
+    private final String mode;
+
+    /**
+     * Remote ref to poll.
+     */
+    private final TargetRef target;
+
+    /**
+     * Delay between two polls in milliseconds.
+     */
+    private final long interval;
+
+    /**
+     * Maximum delay between two failed polls in milliseconds.
+     */
+    private final long maxBackoff;
+
+    /**
+     * Registered listeners.
+     */
+    private final List<GitConfigListener> listeners;
+
+    /**
+     * Scheduler running the polls.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Is the watcher started?
+     */
+    private final AtomicBoolean started;
+
+    /**
+     * Held while the listeners are notified, so none is notified once the
+     * watcher is closed.
+     */
+    private final Object delivery;
+
+    /**
+     * Is the watcher closed? Guarded by {@link #delivery}.
+     */
+    private boolean closed;
+
+    /**
+     * Repository receiving the fetched objects. Only used by the scheduler thread.
+     */
+    private Repository repository;
+
+    /**
+     * Last read commit. Only used by the scheduler thread.
+     */
+    private ObjectId commitId;
+
+    /**
+     * Last read blobs of the configuration files. Only used by the scheduler thread.
+     */
+    private Map<String, ObjectId> blobIds;
+
+    /**
+     * Last read blobs of the included files. Only used by the scheduler thread.
+     */
+    private Map<String, ObjectId> includedBlobIds;
+
+    /**
+     * Last read entries by key. Only used by the scheduler thread.
+     */
+    private Map<String, ConfigEntry> entries;
+
+    /**
+     * Number of consecutive failed polls. Only used by the scheduler thread.
+     */
+    private int failures;
+
+    /**
+     * Build a new instance.
+     *
+     * @param config Provider configuration, {@code remote-configuration.git}
+     */
+    public GitConfigWatcher(final Config config) {
+        this.provider = new GitProvider();
+        this.provider.checkRequiredConfigFields(config);
+        this.config = config;
+        this.repositoryURI = config.getString("uri").trim();
+        this.filepaths = ConfigFileReader.getFilepaths(config);
+        this.mode = config.getString("mode").trim();
+        this.target = TargetRef.of(config);
+        this.interval = config.hasPath("watch.interval")
+            ? config.getDuration("watch.interval", TimeUnit.MILLISECONDS) : TimeUnit.MINUTES.toMillis(1);
+        this.maxBackoff = config.hasPath("watch.max-backoff")
+            ? config.getDuration("watch.max-backoff", TimeUnit.MILLISECONDS) : TimeUnit.MINUTES.toMillis(10);
+        if (this.interval <= 0) {
+            throw new ConfigException.BadValue("watch.interval", "Must be greater than zero.");
+        }
+
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "play-rconf-git-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.started = new AtomicBoolean(false);
+        this.delivery = new Object();
+        this.includedBlobIds = Collections.emptyMap();
+        this.entries = Collections.emptyMap();
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener Listener to notify
+     * @return This instance
+     */
+    public GitConfigWatcher addListener(final GitConfigListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(final GitConfigListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Starts polling the remote repository. Calling this method more than
+     * once has no effect.
+     */
+    public void start() {
+        if (this.started.compareAndSet(false, true)) {
+            this.scheduler.execute(this::poll);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Waits for a running notification, the next ones are dropped
+        synchronized (this.delivery) {
+            this.closed = true;
+        }
+        this.scheduler.shutdownNow();
+        try {
+            this.scheduler.awaitTermination(this.interval, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.repository != null) {
+            this.repository.close();
+        }
+    }
+
+    /**
+     * Runs a poll and schedules the next one.
+     */
+    private void poll() {
+        long delay = this.interval;
+        try {
+            this.check();
+            this.failures = 0;
+        } catch (final GitAPIException | IOException | RuntimeException ex) {
+            this.failures += 1;
+            delay = this.backoffOf(this.failures);
+            this.notifyListeners(listener -> listener.onError(ex));
+        }
+
+        try {
+            this.scheduler.schedule(this::poll, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ignore) {
+            // Watcher closed
+        }
+    }
+
+    /**
+     * Get the delay before the next poll after consecutive failures. It
+     * doubles with each failure, up to the maximum backoff, and is never
+     * shorter than the interval.
+     *
+     * @param failureCount Number of consecutive failed polls
+     * @return Delay in milliseconds
+     */
+    long backoffOf(final int failureCount) {
+        // Shifting further would overflow
+        final int shift = Math.min(failureCount, Long.numberOfLeadingZeros(this.interval) - 1);
+        return Math.max(this.interval, Math.min(this.maxBackoff, this.interval << shift));
+    }
+
+    /**
+     * Notifies the listeners, unless the watcher is closed.
+     *
+     * @param notification Notification to send to each listener
+     */
+    private void notifyListeners(final Consumer<GitConfigListener> notification) {
+        synchronized (this.delivery) {
+            for (final GitConfigListener listener : this.listeners) {
+                if (this.closed) {
+                    return;
+                }
+                notification.accept(listener);
+            }
+        }
+    }
+
+    /**
+     * Fetches the target ref and notifies the listeners if a configuration
+     * file changed.
+     */
+    void check() throws GitAPIException, IOException {
+        if (this.repository == null) {
+            this.repository = new InMemoryRepository.Builder()
+                .setRepositoryDescription(new DfsRepositoryDescription("play-rconf-watcher"))
+                .build();
+        }
+        this.provider.fetchTarget(
+            Git.wrap(this.repository),
+            this.config,
+            this.repositoryURI,
+            this.mode,
+            this.target,
+            NullProgressMonitor.INSTANCE
+        );
+        this.provider.detachHead(this.repository, this.target);
+
+        final RevCommit lastCommit = this.repository.parseCommit(this.repository.resolve(Constants.HEAD));
+        if (lastCommit.equals(this.commitId)) {
+            return;
+        }
+
+        final ConfigFileReader reader = this.provider.getReader();
+        final Map<String, ObjectId> lastBlobIds = reader.findFiles(this.repository, lastCommit, this.filepaths);
+        final String previousCommitId = this.commitId == null ? null : this.commitId.name();
+        final boolean initial = this.blobIds == null;
+        if (lastBlobIds.equals(this.blobIds)
+            && reader.findIncludedFiles(this.repository, lastCommit, this.includedBlobIds.keySet()).equals(this.includedBlobIds)) {
+            // The referenced files may still have changed
+            this.provider.writeReferencedFiles(
+                this.config,
+                this.repositoryURI,
+                this.mode,
+                this.repository,
+                lastCommit,
+                new ArrayList<>(this.entries.values())
+            );
+            this.commitId = lastCommit.copy();
+            return;
+        }
+
+        final Map<String, ObjectId> lastIncludedBlobIds = new LinkedHashMap<>();
+        final List<ConfigEntry> lastEntryList = this.provider.readEntries(
+            this.config,
+            this.repository,
+            lastCommit,
+            lastBlobIds,
+            lastIncludedBlobIds,
+            this.provider.blobFetcherOf(this.config, this.repositoryURI, this.mode, this.repository),
+            GitMetricsListener.NOOP,
+            this.repositoryURI
+        );
+        this.provider.writeReferencedFiles(this.config, this.repositoryURI, this.mode, this.repository, lastCommit, lastEntryList);
+        final Map<String, ConfigEntry> lastEntries = new LinkedHashMap<>();
+        lastEntryList.forEach(entry -> lastEntries.put(entry.getKey(), entry));
+        final GitConfigChange change = GitConfigChange.between(previousCommitId, this.entries, lastCommit.name(), lastEntries);
+        if (!initial && !change.isEmpty()) {
+            this.notifyListeners(listener -> {
+                try {
+                    listener.onChange(change);
+                } catch (final RuntimeException ex) {
+                    listener.onError(ex);
+                }
+            });
+        }
+
+        // Only recorded once the change is delivered, a failed read or
+        // write is retried by the next poll
+        this.commitId = lastCommit.copy();
+        this.blobIds = lastBlobIds;
+        this.includedBlobIds = lastIncludedBlobIds;
+        this.entries = lastEntries;
+    }
+
+}
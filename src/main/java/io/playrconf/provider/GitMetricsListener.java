@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+/**
+ * Receives the timing and size metrics of each stage of
+ * {@link GitProvider#loadData}. All methods do nothing by default, so an
+ * implementation only overrides the stages it is interested in. Durations
+ * are expressed in nanoseconds.
+ * <p>
+ * A listener can be set with {@link GitProvider#setMetricsListener} or with
+ * the {@code metrics.listener} key holding the name of a class having a
+ * public no-argument constructor. Methods can be called concurrently when
+ * several repositories are loaded.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+public interface GitMetricsListener {
+
+    /**
+     * Listener ignoring all metrics.
+     */
+    GitMetricsListener NOOP = new GitMetricsListener() {
+    };
+
+    /**
+     * Called when the connection with the remote is established and the
+     * remote starts sending data.
+     *
+     * @param repositoryURI Repository URI
+     * @param duration      Time spent connecting, authenticating and negotiating
+     */
+    default void onConnect(final String repositoryURI, final long duration) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when a Git task ends, e.g. receiving objects, resolving deltas
+     * or checking out files.
+     *
+     * @param repositoryURI Repository URI
+     * @param task          Task title as reported by JGit
+     * @param duration      Task duration
+     * @param work          Units of work completed, e.g. number of objects
+     */
+    default void onTask(final String repositoryURI, final String task, final long duration, final int work) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when the repository is retrieved.
+     *
+     * @param repositoryURI   Repository URI
+     * @param fetchMode       Fetch mode used
+     * @param duration        Total retrieval duration
+     * @param receivedObjects Number of objects received, zero if nothing was transferred
+     */
+    default void onFetch(final String repositoryURI, final String fetchMode, final long duration, final long receivedObjects) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when the configuration was read from a cached snapshot, without
+     * retrieving the repository.
+     *
+     * @param repositoryURI Repository URI
+     * @param duration      Time spent checking the remote and reading the snapshot
+     */
+    default void onSnapshotHit(final String repositoryURI, final long duration) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when a configuration file blob is opened. Its content is then
+     * streamed to the parser.
+     *
+     * @param repositoryURI Repository URI
+     * @param filepath      Configuration file path
+     * @param duration      Blob opening duration
+     * @param size          Blob size in bytes
+     */
+    default void onRead(final String repositoryURI, final String filepath, final long duration, final long size) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when the configuration files are parsed, merged and flattened.
+     *
+     * @param repositoryURI Repository URI
+     * @param duration      Blob streaming, parsing and flattening duration
+     * @param entries       Number of flattened entries
+     */
+    default void onParse(final String repositoryURI, final long duration, final int entries) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when the entries are emitted to the consumers.
+     *
+     * @param duration Emission duration
+     * @param entries  Number of emitted entries
+     */
+    default void onEmit(final long duration, final int entries) {
+        // Nothing to do by default
+    }
+
+}
@@ -23,40 +23,82 @@
  */
 package io.playrconf.provider;
 
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.JSchException;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigException;
-import com.typesafe.config.ConfigFactory;
-import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigRenderOptions;
 import io.playrconf.sdk.AbstractProvider;
 import io.playrconf.sdk.FileCfgObject;
 import io.playrconf.sdk.KeyValueCfgObject;
 import io.playrconf.sdk.exception.RemoteConfException;
 import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.transport.JschConfigSessionFactory;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FilterSpec;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.SshSessionFactory;
 import org.eclipse.jgit.transport.SshTransport;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.TransportBundleStream;
+import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.util.FS;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 /**
@@ -65,16 +107,67 @@ import java.util.function.Consumer;
  * 1. None     (Used for public repositories);
  * 2. User     (Used for private repositories over HTTPS);
  * 3. SSH-RSA  (Used for private repositories over SSH with a RSA Private Key).
+ * Instances are safe for concurrent use. Concurrent loadings of the same
+ * repository configuration share a single fetch, even across instances.
  *
  * @author Felipe Bonezi
  * @since 20.10.29
  */
 public class GitProvider extends AbstractProvider {
 
+    /**
+     * Credentials providers by login and password.
+     */
+    private static final ConcurrentMap<String, CredentialsProvider> CREDENTIALS_PROVIDERS = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the asynchronous loadings.
+     */
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "play-rconf-git-async");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Enforces the total timeout of the asynchronous loadings.
+     */
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "play-rconf-git-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Loadings in progress by repository configuration. Concurrent loadings
+     * of the same configuration, from any provider instance, share a single
+     * fetch.
+     */
+    private static final ConcurrentMap<String, CompletableFuture<List<ConfigEntry>>> IN_FLIGHT = new ConcurrentHashMap<>();
+
     /**
      * Contains the provider version.
      */
-    private static String providerVersion;
+    private static volatile String providerVersion;
+
+    /**
+     * Reads the configuration files from the fetched commit.
+     */
+    private final ConfigFileReader reader = new ConfigFileReader(value -> isFile(value));
+
+    /**
+     * Receives the loading metrics.
+     */
+    private volatile GitMetricsListener metricsListener = GitMetricsListener.NOOP;
+
+    /**
+     * Get the reader used to read the configuration files.
+     *
+     * @return Configuration files reader
+     */
+    ConfigFileReader getReader() {
+        return this.reader;
+    }
 
     @Override
     public String getName() {
@@ -85,6 +178,9 @@ public class GitProvider extends AbstractProvider {
     public String getVersion() {
         if (GitProvider.providerVersion == null) {
             synchronized (GitProvider.class) {
+                if (GitProvider.providerVersion != null) {
+                    return GitProvider.providerVersion;
+                }
                 final Properties properties = new Properties();
                 final InputStream is = GitProvider.class.getClassLoader()
                     .getResourceAsStream("playrconf-git.properties");
@@ -116,36 +212,292 @@ public class GitProvider extends AbstractProvider {
     public void loadData(final Config config,
                          final Consumer<KeyValueCfgObject> kvObjConsumer,
                          final Consumer<FileCfgObject> fileObjConsumer) throws ConfigException, RemoteConfException {
+        if (getTimeout(config, "total", 0) <= 0) {
+            this.emit(this.loadConfiguration(config), kvObjConsumer, fileObjConsumer);
+            return;
+        }
+
+        try {
+            this.loadDataAsync(config, kvObjConsumer, fileObjConsumer).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RemoteConfException(ex.getMessage(), ex);
+        } catch (final ExecutionException ex) {
+            throw rethrow(ex.getCause());
+        }
+    }
+
+    /**
+     * Loads the configuration on a dedicated thread. The consumers are called
+     * from this thread, before the returned future completes. If
+     * {@code timeout.total} is set and expires first, the loading thread is
+     * interrupted and the future fails with a {@link RemoteConfException}.
+     *
+     * @param config          Config file
+     * @param kvObjConsumer   Key/value consumer
+     * @param fileObjConsumer File consumer
+     * @return Future completed once every key has been emitted
+     */
+    public CompletableFuture<Void> loadDataAsync(final Config config,
+                                                 final Consumer<KeyValueCfgObject> kvObjConsumer,
+                                                 final Consumer<FileCfgObject> fileObjConsumer) {
+        return this.loadDataAsync(config, kvObjConsumer, fileObjConsumer, GitProvider.LOADER);
+    }
+
+    /**
+     * Loads the configuration using the given executor. The consumers are
+     * called from the loading thread, before the returned future completes.
+     * If {@code timeout.total} is set and expires first, the loading thread
+     * is interrupted and the future fails with a {@link RemoteConfException}.
+     *
+     * @param config          Config file
+     * @param kvObjConsumer   Key/value consumer
+     * @param fileObjConsumer File consumer
+     * @param executor        Executor running the loading
+     * @return Future completed once every key has been emitted
+     */
+    public CompletableFuture<Void> loadDataAsync(final Config config,
+                                                 final Consumer<KeyValueCfgObject> kvObjConsumer,
+                                                 final Consumer<FileCfgObject> fileObjConsumer,
+                                                 final Executor executor) {
+        final CompletableFuture<List<ConfigEntry>> loading = new CompletableFuture<>();
+        final AtomicReference<Thread> loadingThread = new AtomicReference<>();
+        executor.execute(() -> {
+            loadingThread.set(Thread.currentThread());
+            try {
+                if (!loading.isDone()) {
+                    loading.complete(this.loadConfiguration(config));
+                }
+            } catch (final Throwable ex) {
+                loading.completeExceptionally(ex);
+            } finally {
+                synchronized (loadingThread) {
+                    loadingThread.set(null);
+                    // Clears an interruption from an expired deadline
+                    Thread.interrupted();
+                }
+            }
+        });
+
+        final long totalTimeout = getTimeout(config, "total", 0);
+        if (totalTimeout > 0) {
+            final ScheduledFuture<?> deadline = GitProvider.DEADLINES.schedule(() -> {
+                final RemoteConfException timeout = new RemoteConfException(
+                    String.format("Loading timed out after %d ms.", totalTimeout),
+                    new TimeoutException()
+                );
+                if (loading.completeExceptionally(timeout)) {
+                    synchronized (loadingThread) {
+                        final Thread thread = loadingThread.get();
+                        if (thread != null) {
+                            thread.interrupt();
+                        }
+                    }
+                }
+            }, totalTimeout, TimeUnit.MILLISECONDS);
+            loading.whenComplete((entries, ex) -> deadline.cancel(false));
+        }
+
+        return loading.thenAccept(entries -> this.emit(entries, kvObjConsumer, fileObjConsumer));
+    }
+
+    /**
+     * Loads the flattened configuration of every declared repository.
+     *
+     * @param config Config file
+     * @return Flattened entries
+     */
+    private List<ConfigEntry> loadConfiguration(final Config config) throws ConfigException, RemoteConfException {
+        if (config.hasPath("metrics.listener") && this.metricsListener == GitMetricsListener.NOOP) {
+            synchronized (this) {
+                if (this.metricsListener == GitMetricsListener.NOOP) {
+                    this.metricsListener = newMetricsListener(config.getString("metrics.listener").trim());
+                }
+            }
+        }
+
+        if (config.hasPath("startup-jitter")) {
+            sleepJitter(config.getDuration("startup-jitter", TimeUnit.MILLISECONDS));
+        }
+
+        return config.hasPath("repositories")
+            ? this.loadRepositories(config)
+            : this.loadRepository(config);
+    }
+
+    /**
+     * Emits the flattened entries to the right consumers.
+     *
+     * @param entries         Flattened entries
+     * @param kvObjConsumer   Key/value consumer
+     * @param fileObjConsumer File consumer
+     */
+    private void emit(final List<ConfigEntry> entries,
+                      final Consumer<KeyValueCfgObject> kvObjConsumer,
+                      final Consumer<FileCfgObject> fileObjConsumer) {
+        final long startTime = System.nanoTime();
+        entries.forEach(entry -> entry.emit(kvObjConsumer, fileObjConsumer));
+        this.metricsListener.onEmit(System.nanoTime() - startTime, entries.size());
+    }
+
+    /**
+     * Get a timeout from the {@code timeout} block.
+     *
+     * @param config       Config file
+     * @param name         Timeout name
+     * @param defaultValue Default value in milliseconds
+     * @return Timeout in milliseconds, 0 or less if disabled
+     */
+    private static long getTimeout(final Config config, final String name, final long defaultValue) {
+        final String path = "timeout." + name;
+        return config.hasPath(path) ? config.getDuration(path, TimeUnit.MILLISECONDS) : defaultValue;
+    }
+
+    /**
+     * Unwraps the failure of a loading run on another thread.
+     *
+     * @param cause Failure cause
+     * @return The exception to throw if the cause is not a runtime exception
+     */
+    private static RemoteConfException rethrow(final Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof RemoteConfException) {
+            return (RemoteConfException) cause;
+        }
+        return new RemoteConfException(cause.getMessage(), cause);
+    }
+
+    /**
+     * Waits for a random delay, so instances started at the same time don't
+     * contact the remote at the same time.
+     *
+     * @param maxDelay Maximum delay in milliseconds
+     */
+    private static void sleepJitter(final long maxDelay) throws RemoteConfException {
+        if (maxDelay <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelay + 1));
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RemoteConfException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Sets the listener receiving the loading metrics.
+     *
+     * @param metricsListener Metrics listener, {@code null} to disable metrics
+     */
+    public void setMetricsListener(final GitMetricsListener metricsListener) {
+        this.metricsListener = metricsListener == null ? GitMetricsListener.NOOP : metricsListener;
+    }
+
+    /**
+     * Instantiates the metrics listener set in the configuration.
+     *
+     * @param className Listener class name
+     * @return Metrics listener
+     */
+    private static GitMetricsListener newMetricsListener(final String className) throws ConfigException {
+        if (className.isEmpty()) {
+            return GitMetricsListener.NOOP;
+        }
+
+        try {
+            return Class.forName(className)
+                .asSubclass(GitMetricsListener.class)
+                .getDeclaredConstructor()
+                .newInstance();
+        } catch (final ReflectiveOperationException | ClassCastException ex) {
+            throw new ConfigException.BadValue("metrics.listener", String.format("Can't instantiate %s.", className), ex);
+        }
+    }
+
+    /**
+     * Loads the keys added, changed or removed since the configuration read
+     * at the given commit. If none of the configuration files, nor the files
+     * they include as recorded by a previous loading, differs between both
+     * commits, nothing is parsed. Otherwise both revisions are parsed and
+     * compared key by key. If the previous commit can't be retrieved anymore,
+     * every key is reported as changed.
+     *
+     * @param config           Config file
+     * @param previousCommitId Commit id of the configuration previously applied, {@code null} to load everything
+     * @return The change, {@link GitConfigChange#apply(Consumer, Consumer)} emits the added or changed keys
+     */
+    public GitConfigChange loadChanges(final Config config, final String previousCommitId) throws ConfigException, RemoteConfException {
+        if (config.hasPath("repositories")) {
+            throw new ConfigException.BadValue("repositories", "Changes can only be loaded from a single repository.");
+        }
+        if (previousCommitId != null && !ObjectId.isId(previousCommitId)) {
+            throw new IllegalArgumentException(String.format("Invalid commit id (%s).", previousCommitId));
+        }
+
+        return this.withRepository(
+            config,
+            (repositoryURI, filepaths, mode) -> this.loadChanges(config, repositoryURI, filepaths, mode, previousCommitId)
+        );
+    }
+
+    /**
+     * Loads the flattened configuration of a single repository. If the same
+     * configuration is already being loaded by another thread, its result is
+     * awaited instead of fetching the repository again.
+     *
+     * @param config Config file
+     * @return Flattened entries
+     */
+    List<ConfigEntry> loadRepository(final Config config) throws ConfigException, RemoteConfException {
+        final String key = cacheKey(config.root().render(ConfigRenderOptions.concise()));
+        final CompletableFuture<List<ConfigEntry>> loading = new CompletableFuture<>();
+        final CompletableFuture<List<ConfigEntry>> inFlight = GitProvider.IN_FLIGHT.putIfAbsent(key, loading);
+        if (inFlight != null) {
+            try {
+                return inFlight.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RemoteConfException(ex.getMessage(), ex);
+            } catch (final ExecutionException ex) {
+                throw rethrow(ex.getCause());
+            }
+        }
+
+        try {
+            final List<ConfigEntry> entries = Collections.unmodifiableList(
+                this.withRepository(config, (repositoryURI, filepaths, mode) -> this.loadEntries(config, repositoryURI, filepaths, mode))
+            );
+            loading.complete(entries);
+            return entries;
+        } catch (final Throwable ex) {
+            loading.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            GitProvider.IN_FLIGHT.remove(key, loading);
+        }
+    }
+
+    /**
+     * Validates the configuration of a single repository, then runs the
+     * loader and reports its failures as configuration errors.
+     *
+     * @param config Config file
+     * @param loader Loader
+     * @param <T>    Type of the loaded data
+     * @return Loaded data
+     */
+    private <T> T withRepository(final Config config, final RepositoryLoader<T> loader) throws ConfigException, RemoteConfException {
         this.checkRequiredConfigFields(config);
 
         try {
             final String mode = config.getString("mode").trim();
             final String repositoryURI = config.getString("uri").trim();
-            final String filepath = config.getString("filepath").trim();
-
-            final Repository repository = this.cloneRepository(config, repositoryURI, mode);
-            final ObjectId head = repository.resolve(Constants.HEAD);
-            final RevCommit lastCommit = repository.parseCommit(head);
-
-            final String conf = readFile(repository, lastCommit, filepath);
-            final ConfigParseOptions options = ConfigParseOptions
-                .defaults()
-                .setOriginDescription("play-rconf")
-                .setAllowMissing(false);
-
-            final Config remoteConfig = ConfigFactory.parseString(conf, options);
-            remoteConfig.entrySet().forEach(entry -> {
-                final String value = entry.getValue().render();
-                if (isFile(value)) {
-                    fileObjConsumer.accept(
-                        new FileCfgObject(entry.getKey(), value)
-                    );
-                } else {
-                    kvObjConsumer.accept(
-                        new KeyValueCfgObject(entry.getKey(), value)
-                    );
-                }
-            });
+            final List<String> filepaths = ConfigFileReader.getFilepaths(config);
+
+            return loader.load(repositoryURI, filepaths, mode);
         } catch (final ConfigException ex2) {
             if (ex2.getCause() != null) {
                 throw new ConfigException.BadPath(
@@ -171,26 +523,85 @@ public class GitProvider extends AbstractProvider {
         }
     }
 
+    /**
+     * Loads the repositories declared in the {@code repositories} list
+     * concurrently. Each block inherits the keys it doesn't set from the
+     * provider configuration. Results are merged in the declared order, a
+     * repository overrides the keys of the repositories declared before it.
+     *
+     * @param config Config file
+     * @return Flattened entries
+     */
+    private List<ConfigEntry> loadRepositories(final Config config) throws ConfigException, RemoteConfException {
+        final Config defaults = config.withoutPath("repositories");
+        final List<Config> blocks = new ArrayList<>();
+        for (final Config block : config.getConfigList("repositories")) {
+            blocks.add(block.withFallback(defaults));
+        }
+        if (blocks.isEmpty()) {
+            throw new ConfigException.BadValue("repositories", "At least one repository must be declared.");
+        }
+
+        final int parallelism = config.hasPath("parallelism") ? config.getInt("parallelism") : 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(parallelism, blocks.size())),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "play-rconf-git-loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        try {
+            final List<Future<List<ConfigEntry>>> futures = new ArrayList<>(blocks.size());
+            for (final Config block : blocks) {
+                futures.add(executor.submit(() -> this.loadRepository(block)));
+            }
+
+            final Map<String, ConfigEntry> entries = new LinkedHashMap<>();
+            for (final Future<List<ConfigEntry>> future : futures) {
+                for (final ConfigEntry entry : future.get()) {
+                    entries.remove(entry.getKey());
+                    entries.put(entry.getKey(), entry);
+                }
+            }
+            return new ArrayList<>(entries.values());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RemoteConfException(ex.getMessage(), ex);
+        } catch (final ExecutionException ex) {
+            throw rethrow(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Check if all required fields are set in the project config file.
      *
      * @param config Config file
      */
-    private void checkRequiredConfigFields(final Config config) throws ConfigException {
+    void checkRequiredConfigFields(final Config config) throws ConfigException {
         if (!config.hasPath("mode") || config.getString("mode").isEmpty())
             throw new ConfigException.Missing("mode");
 
         if (!config.hasPath("uri") || config.getString("uri").isEmpty())
             throw new ConfigException.Missing("uri");
 
-        if (!config.hasPath("filepath") || config.getString("filepath").isEmpty())
+        if (ConfigFileReader.getFilepaths(config).isEmpty())
             throw new ConfigException.Missing("filepath");
 
         final String mode = config.getString("mode").trim();
         final String repositoryURI = config.getString("uri").trim();
 
+        // Validates branch, tag and commit
+        TargetRef.of(config);
+
+        final List<String> repositoryURIs = new ArrayList<>();
+        repositoryURIs.add(repositoryURI);
+        repositoryURIs.addAll(getMirrors(config));
+
         if (Objects.equals(mode, "user")) {
-            if (!repositoryURI.startsWith("http")) {
+            if (!repositoryURIs.stream().allMatch(uri -> uri.startsWith("http"))) {
                 throw new ConfigException.BadPath("mode", String.format("Invalid repository URI for %s mode.", mode));
             }
 
@@ -200,7 +611,7 @@ public class GitProvider extends AbstractProvider {
                 throw new ConfigException.Missing("user.password");
             }
         } else if (Objects.equals(mode, "ssh-rsa")) {
-            if (!repositoryURI.startsWith("git@")) {
+            if (!repositoryURIs.stream().allMatch(uri -> uri.startsWith("git@"))) {
                 throw new ConfigException.BadPath("mode", String.format("Invalid repository URI for %s mode.", mode));
             }
 
@@ -211,72 +622,1270 @@ public class GitProvider extends AbstractProvider {
     }
 
     /**
-     * Clones main branch of Git repository.
+     * Loads the flattened remote configuration. If a snapshot of the
+     * configuration parsed at the current remote HEAD exists in the cache
+     * directory, it is used without fetching anything.
      *
      * @param config        Config file
      * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param filepaths     Paths to retrieve the config content
      * @param mode          Auth mode
-     * @return Repository
+     * @return Flattened entries
      */
-    private Repository cloneRepository(final Config config, final String repositoryURI, final String mode) throws GitAPIException, IOException {
-        final String dirPath = String.format("play-rconf-git-%s", System.currentTimeMillis());
-        final Path repoDirPath = Files.createTempDirectory(dirPath);
-        final CloneCommand cloneCommand = Git.cloneRepository()
-            .setURI(repositoryURI)
-            .setDirectory(repoDirPath.toFile());
+    private List<ConfigEntry> loadEntries(final Config config,
+                                          final String repositoryURI,
+                                          final List<String> filepaths,
+                                          final String mode) throws GitAPIException, IOException {
+        final TargetRef target = TargetRef.of(config);
+        final File snapshotFile = snapshotFileOf(config, repositoryURI, target, filepaths);
 
-        switch (mode) {
-            case "ssh-rsa":
-                final SshSessionFactory sshSessionFactory = new JschConfigSessionFactory() {
-
-                    @Override
-                    protected JSch createDefaultJSch(final FS fs) throws JSchException {
-                        // SSH configuration (Optional password)
-                        final String privateKey = config.getString("ssh-rsa.private-key");
-                        final String password = config.hasPath("ssh-rsa.password")
-                            ? config.getString("ssh-rsa.password") : null;
-                        final JSch jSch = super.createDefaultJSch(fs);
-                        jSch.addIdentity(privateKey, password);
-                        return jSch;
+        if (snapshotFile != null && (!config.hasPath("cache.skip-if-unchanged") || config.getBoolean("cache.skip-if-unchanged"))) {
+            final long startTime = System.nanoTime();
+            final ConfigSnapshot snapshot = ConfigSnapshot.read(snapshotFile);
+            if (snapshot != null && ReferencedFiles.exist(snapshot.getEntries())) {
+                if (snapshot.getObjectId().equals(target.getCommit())) {
+                    // Pinned commit, nothing can change
+                    this.metricsListener.onSnapshotHit(repositoryURI, System.nanoTime() - startTime);
+                    return snapshot.getEntries();
+                }
+
+                final ObjectId remoteHead = target.getCommit() == null ? this.lsRemoteTarget(config, repositoryURI, mode, target) : null;
+                if (target.getCommit() == null && (remoteHead == null || remoteHead.equals(snapshot.getObjectId()))) {
+                    // Unchanged or unreachable remote
+                    this.metricsListener.onSnapshotHit(repositoryURI, System.nanoTime() - startTime);
+                    return snapshot.getEntries();
+                }
+            }
+        }
+
+        final Map.Entry<String, Repository> fetched = this.openFastestRepository(config, repositoryURI, mode);
+        final String fetchedURI = fetched.getKey();
+        final Repository repository = fetched.getValue();
+        try {
+            final RevCommit lastCommit = repository.parseCommit(repository.resolve(Constants.HEAD));
+            final Map<String, ObjectId> includedFiles = new LinkedHashMap<>();
+            final List<ConfigEntry> entries = this.readEntries(
+                config,
+                repository,
+                lastCommit,
+                this.findFiles(config, fetchedURI, mode, repository, lastCommit, filepaths),
+                includedFiles,
+                this.blobFetcherOf(config, fetchedURI, mode, repository),
+                this.metricsListener,
+                repositoryURI
+            );
+            this.writeReferencedFiles(config, fetchedURI, mode, repository, lastCommit, entries);
+            if (snapshotFile != null) {
+                new ConfigSnapshot(lastCommit, entries, includedFiles).write(snapshotFile);
+            }
+            return entries;
+        } finally {
+            Workspace.release(repository);
+        }
+    }
+
+    /**
+     * Loads the keys added, changed or removed since the given commit.
+     *
+     * @param config           Config file
+     * @param repositoryURI    Repository URI using HTTPS or SSH
+     * @param filepaths        Paths to retrieve the config content
+     * @param mode             Auth mode
+     * @param previousCommitId Commit id of the configuration previously applied (Optional)
+     * @return The change
+     */
+    private GitConfigChange loadChanges(final Config config,
+                                        final String repositoryURI,
+                                        final List<String> filepaths,
+                                        final String mode,
+                                        final String previousCommitId) throws GitAPIException, IOException {
+        final Map.Entry<String, Repository> fetched = this.openFastestRepository(config, repositoryURI, mode);
+        final String fetchedURI = fetched.getKey();
+        final Repository repository = fetched.getValue();
+        try {
+            final RevCommit lastCommit = repository.parseCommit(repository.resolve(Constants.HEAD));
+            final RevCommit previousCommit = previousCommitId == null
+                ? null : this.findCommit(config, fetchedURI, mode, repository, ObjectId.fromString(previousCommitId));
+
+            final Map<String, ConfigEntry> previous = new LinkedHashMap<>();
+            if (previousCommit != null) {
+                final Map<String, ObjectId> recordedIncludes = this.findRecordedIncludes(config, repositoryURI, filepaths, repository, previousCommit);
+                if (recordedIncludes != null) {
+                    final List<String> paths = new ArrayList<>(filepaths);
+                    paths.addAll(recordedIncludes.keySet());
+                    if (!this.reader.hasChanges(repository, previousCommit, lastCommit, paths)) {
+                        return GitConfigChange.between(previousCommitId, previous, lastCommit.name(), previous);
                     }
+                }
 
-                };
-                cloneCommand.setTransportConfigCallback(transport -> {
-                    final SshTransport sshTransport = (SshTransport) transport;
-                    sshTransport.setSshSessionFactory(sshSessionFactory);
-                });
-                break;
+                final Map<String, ObjectId> includedFiles = new LinkedHashMap<>();
+                try {
+                    this.readEntries(
+                        config,
+                        repository,
+                        previousCommit,
+                        this.findFiles(config, fetchedURI, mode, repository, previousCommit, filepaths),
+                        includedFiles,
+                        this.blobFetcherOf(config, fetchedURI, mode, repository),
+                        GitMetricsListener.NOOP,
+                        repositoryURI
+                    ).forEach(entry -> previous.put(entry.getKey(), entry));
+                } catch (final IllegalArgumentException ignore) {
+                    // The files didn't exist yet at the previous commit
+                }
 
-            case "user":
-                final String username = config.getString("user.login");
-                final String password = config.getString("user.password");
-                cloneCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password));
-                break;
+                // Without recorded includes, they are only known once the
+                // previous configuration is read
+                if (recordedIncludes == null) {
+                    final List<String> paths = new ArrayList<>(filepaths);
+                    paths.addAll(includedFiles.keySet());
+                    if (!this.reader.hasChanges(repository, previousCommit, lastCommit, paths)) {
+                        return GitConfigChange.between(previousCommitId, previous, lastCommit.name(), previous);
+                    }
+                }
+            }
 
-            default:
-                // Public repository over HTTPS
-                break;
+            final List<ConfigEntry> entries = this.readEntries(
+                config,
+                repository,
+                lastCommit,
+                this.findFiles(config, fetchedURI, mode, repository, lastCommit, filepaths),
+                new LinkedHashMap<>(),
+                this.blobFetcherOf(config, fetchedURI, mode, repository),
+                this.metricsListener,
+                repositoryURI
+            );
+            this.writeReferencedFiles(config, fetchedURI, mode, repository, lastCommit, entries);
+
+            final Map<String, ConfigEntry> current = new LinkedHashMap<>();
+            entries.forEach(entry -> current.put(entry.getKey(), entry));
+            return GitConfigChange.between(previousCommitId, previous, lastCommit.name(), current);
+        } finally {
+            Workspace.release(repository);
+        }
+    }
+
+    /**
+     * Get the files included by the configuration read at a commit, as
+     * recorded by a previous loading, without parsing anything. They are
+     * looked for in the snapshot of the last loading, then in the parsed
+     * configuration cache.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param filepaths     Paths to retrieve the config content
+     * @param repository    Local repository
+     * @param commit        Commit the configuration was read from
+     * @return Blob ids of the included files by path, or {@code null} if they were not recorded
+     */
+    private Map<String, ObjectId> findRecordedIncludes(final Config config,
+                                                       final String repositoryURI,
+                                                       final List<String> filepaths,
+                                                       final Repository repository,
+                                                       final RevCommit commit) throws IOException {
+        final File snapshotFile = snapshotFileOf(config, repositoryURI, TargetRef.of(config), filepaths);
+        if (snapshotFile != null) {
+            final ConfigSnapshot snapshot = ConfigSnapshot.read(snapshotFile);
+            if (snapshot != null && snapshot.getObjectId().equals(commit)) {
+                return snapshot.getIncludedFiles();
+            }
+        }
+
+        final ParsedConfigCache cache = ParsedConfigCache.of(config);
+        if (cache == null) {
+            return null;
+        }
+        try {
+            final ConfigSnapshot cached = cache.get(ParsedConfigCache.keyOf(this.reader.findFiles(repository, commit, filepaths)));
+            return cached == null ? null : cached.getIncludedFiles();
+        } catch (final IllegalArgumentException ignore) {
+            // The files didn't exist yet at this commit
+            return null;
+        }
+    }
+
+    /**
+     * Get the file holding the snapshot of the last loading.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param target        Remote ref holding the configuration
+     * @param filepaths     Paths to retrieve the config content
+     * @return Snapshot file, or {@code null} if the cache directory is not set
+     */
+    private static File snapshotFileOf(final Config config,
+                                       final String repositoryURI,
+                                       final TargetRef target,
+                                       final List<String> filepaths) {
+        if (!config.hasPath("cache.directory") || config.getString("cache.directory").trim().isEmpty()) {
+            return null;
+        }
+        return new File(
+            config.getString("cache.directory").trim(),
+            String.format("%s.snapshot", cacheKey(repositoryURI, target.toString(), String.join(",", filepaths)))
+        );
+    }
+
+    /**
+     * Locates the configuration files in the commit tree. The blobs missing
+     * from a partially fetched repository are fetched by id.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param repository    Local repository
+     * @param commit        Commit to read
+     * @param filepaths     Paths to retrieve the config content
+     * @return Blob ids by path, in merge order
+     */
+    private Map<String, ObjectId> findFiles(final Config config,
+                                            final String repositoryURI,
+                                            final String mode,
+                                            final Repository repository,
+                                            final RevCommit commit,
+                                            final List<String> filepaths) throws GitAPIException, IOException {
+        final Map<String, ObjectId> files = this.reader.findFiles(repository, commit, filepaths);
+        final List<ObjectId> missingBlobs = new ArrayList<>();
+        for (final ObjectId blobId : files.values()) {
+            if (!repository.getObjectDatabase().has(blobId)) {
+                missingBlobs.add(blobId);
+            }
+        }
+        if (!missingBlobs.isEmpty()) {
+            this.blobFetcherOf(config, repositoryURI, mode, repository).fetch(missingBlobs);
+        }
+        return files;
+    }
+
+    /**
+     * Get the fetcher of the blobs missing from a partially fetched
+     * repository. Each blob is fetched by id.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param repository    Local repository
+     * @return Blob fetcher
+     */
+    BlobFetcher blobFetcherOf(final Config config, final String repositoryURI, final String mode, final Repository repository) {
+        return blobIds -> {
+            final List<RefSpec> missingBlobs = new ArrayList<>();
+            blobIds.forEach(blobId -> missingBlobs.add(new RefSpec(blobId.name())));
+
+            // Fetched into an empty repository, otherwise the server would
+            // consider the blobs as known because their commit is
+            final Repository blobRepository = new InMemoryRepository.Builder()
+                .setRepositoryDescription(new DfsRepositoryDescription("play-rconf-blobs"))
+                .build();
+            try (final ObjectInserter inserter = repository.newObjectInserter()) {
+                this.fetch(Git.wrap(blobRepository), config, repositoryURI, mode, missingBlobs, NullProgressMonitor.INSTANCE, FilterSpec.NO_FILTER);
+                for (final ObjectId blobId : blobIds) {
+                    final ObjectLoader loader = blobRepository.open(blobId, Constants.OBJ_BLOB);
+                    try (final InputStream is = loader.openStream()) {
+                        inserter.insert(Constants.OBJ_BLOB, loader.getSize(), is);
+                    }
+                }
+                inserter.flush();
+            } finally {
+                blobRepository.close();
+            }
+        };
+    }
+
+    /**
+     * Writes the file values pointing to another file of the commit. The
+     * blobs are streamed to their target while the repository is open, Git
+     * LFS pointers are resolved through the local LFS object store.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param repository    Local repository
+     * @param commit        Commit the entries were read from
+     * @param entries       Flattened entries
+     */
+    void writeReferencedFiles(final Config config,
+                              final String repositoryURI,
+                              final String mode,
+                              final Repository repository,
+                              final RevCommit commit,
+                              final List<ConfigEntry> entries) throws GitAPIException, IOException {
+        final Map<String, ConfigEntry> references = new LinkedHashMap<>();
+        for (final ConfigEntry entry : entries) {
+            if (entry.isFile() && entry.getReferencedPath() != null) {
+                references.put(entry.getKey(), entry);
+            }
+        }
+        if (references.isEmpty()) {
+            return;
+        }
+
+        final File lfsDirectory = ReferencedFiles.getLfsDirectory(config, repository);
+        for (final ConfigEntry entry : references.values()) {
+            final Map<String, ObjectId> files = this.findFiles(
+                config,
+                repositoryURI,
+                mode,
+                repository,
+                commit,
+                Collections.singletonList(entry.getReferencedPath())
+            );
+            ReferencedFiles.write(repository, files.values().iterator().next(), new File(entry.getTargetPath()), lfsDirectory);
+        }
+    }
+
+    /**
+     * Reads the configuration files. If the parsed configuration cache is
+     * enabled and already holds the same blobs, nothing is parsed.
+     *
+     * @param config          Config file
+     * @param repository      Repository ref
+     * @param commit          Commit the files are read from
+     * @param files           Blob ids by path, in merge order
+     * @param includedFiles   Receives the blob ids of the included files by path, zero for the missing ones
+     * @param blobFetcher     Fetches the included blobs missing from the repository
+     * @param listener        Listener receiving the read and parse metrics
+     * @param repositoryURI   Repository URI reported to the listener
+     * @return Flattened entries
+     */
+    List<ConfigEntry> readEntries(final Config config,
+                                  final Repository repository,
+                                  final RevCommit commit,
+                                  final Map<String, ObjectId> files,
+                                  final Map<String, ObjectId> includedFiles,
+                                  final BlobFetcher blobFetcher,
+                                  final GitMetricsListener listener,
+                                  final String repositoryURI) throws IOException {
+        final ParsedConfigCache cache = ParsedConfigCache.of(config);
+        if (cache == null) {
+            return this.reader.readEntries(
+                repository,
+                commit,
+                files,
+                ConfigFileReader.getMaxFileSize(config),
+                includedFiles,
+                blobFetcher,
+                listener,
+                repositoryURI
+            );
         }
 
-        return cloneCommand.call().getRepository();
+        final long startTime = System.nanoTime();
+        final ObjectId key = ParsedConfigCache.keyOf(files);
+        final ConfigSnapshot cached = cache.get(key);
+        if (cached != null
+            && this.reader.findIncludedFiles(repository, commit, cached.getIncludedFiles().keySet()).equals(cached.getIncludedFiles())) {
+            includedFiles.putAll(cached.getIncludedFiles());
+            listener.onParse(repositoryURI, System.nanoTime() - startTime, cached.getEntries().size());
+            return cached.getEntries();
+        }
+
+        final Map<String, ObjectId> readIncludedFiles = new LinkedHashMap<>();
+        final List<ConfigEntry> entries = this.reader.readEntries(
+            repository,
+            commit,
+            files,
+            ConfigFileReader.getMaxFileSize(config),
+            readIncludedFiles,
+            blobFetcher,
+            listener,
+            repositoryURI
+        );
+        cache.put(key, entries, readIncludedFiles);
+        includedFiles.putAll(readIncludedFiles);
+        return entries;
     }
 
     /**
-     * Read config file from repository.
+     * Retrieves a commit, fetching it by id if it is not in the repository.
      *
-     * @param repository Repository ref
-     * @param commit     Last commit ref from the main branch
-     * @param filepath   Path to retrieve the config content
-     * @return Config content as String
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param repository    Local repository
+     * @param commitId      Commit id
+     * @return The commit, or {@code null} if it can't be retrieved
      */
-    private String readFile(final Repository repository, final RevCommit commit, final String filepath) throws IOException {
-        final TreeWalk walk = TreeWalk.forPath(repository, filepath, commit.getTree());
-        if (walk == null) {
-            throw new IllegalArgumentException(String.format("Filepath (%s) not found.", filepath));
+    private RevCommit findCommit(final Config config,
+                                 final String repositoryURI,
+                                 final String mode,
+                                 final Repository repository,
+                                 final ObjectId commitId) throws GitAPIException, IOException {
+        if (!repository.getObjectDatabase().has(commitId)) {
+            try {
+                this.fetch(Git.wrap(repository), config, repositoryURI, mode, new RefSpec(commitId.name()), NullProgressMonitor.INSTANCE);
+            } catch (final TransportException ignore) {
+                // The server doesn't allow fetching a commit by id
+            }
+            if (!repository.getObjectDatabase().has(commitId)) {
+                return null;
+            }
         }
+        return repository.parseCommit(commitId);
+    }
+
+    /**
+     * Retrieves the commit pointed by the remote ref using the refs
+     * advertisement only. The primary URI and its mirrors are queried in
+     * the same hedged order as the fetch.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param target        Remote ref to look for
+     * @return Commit id, or {@code null} if no remote can be reached
+     * @throws IllegalArgumentException If the remotes reached don't advertise the ref
+     */
+    private ObjectId lsRemoteTarget(final Config config,
+                                    final String repositoryURI,
+                                    final String mode,
+                                    final TargetRef target) throws GitAPIException, IOException {
+        try {
+            return this.hedge(
+                config,
+                repositoryURI,
+                (uri, cancellation) -> {
+                    final LsRemoteCommand lsRemoteCommand = Git.lsRemoteRepository()
+                        .setRemote(uri);
+                    this.configureTransport(lsRemoteCommand, config, mode);
+
+                    // A deleted or mistyped ref must not keep serving the snapshot
+                    final ObjectId commitId = target.resolve(lsRemoteCommand.callAsMap());
+                    if (commitId == null) {
+                        throw new IllegalArgumentException(String.format("Ref (%s) not found.", target));
+                    }
+                    return commitId;
+                },
+                commitId -> {
+                    // Nothing to release
+                }
+            ).getValue();
+        } catch (final InvalidRemoteException | TransportException ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds a key usable as file name from the given values.
+     *
+     * @param values Values identifying the cached data
+     * @return Hexadecimal SHA-1 of the values
+     */
+    private static String cacheKey(final String... values) {
+        return ObjectId.fromRaw(
+            Constants.newMessageDigest().digest(String.join("\n", values).getBytes(StandardCharsets.UTF_8))
+        ).name();
+    }
+
+    /**
+     * Retrieves the Git repository using the configured fetch mode. Whatever
+     * the mode is, HEAD of the returned repository points to the commit to read.
+     * The repository must be released with {@link Workspace#release(Repository)}.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @return Repository
+     */
+    Repository openRepository(final Config config, final String repositoryURI, final String mode) throws GitAPIException, IOException {
+        return this.openRepository(config, repositoryURI, mode, () -> false);
+    }
+
+    /**
+     * Retrieves the Git repository using the configured fetch mode. The
+     * {@code clone} and {@code single-branch} modes use the mirror of the
+     * cache directory when it is set. The fetch is aborted at its next
+     * progress update once it is cancelled.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param cancellation  Tells if the fetch is cancelled
+     * @return Repository
+     */
+    private Repository openRepository(final Config config,
+                                      final String repositoryURI,
+                                      final String mode,
+                                      final BooleanSupplier cancellation) throws GitAPIException, IOException {
+        final MetricsProgressMonitor monitor = new MetricsProgressMonitor(this.metricsListener, repositoryURI, cancellation);
+        final String configuredFetchMode = config.hasPath("fetch.mode") ? config.getString("fetch.mode").trim() : "clone";
+        // The mirror only replaces the fetch modes cloning the remote
+        final String fetchMode = config.hasPath("cache.directory")
+            && !config.getString("cache.directory").trim().isEmpty()
+            && ("clone".equals(configuredFetchMode) || "single-branch".equals(configuredFetchMode))
+            ? "mirror"
+            : configuredFetchMode;
+
+        final Repository repository;
+        switch (fetchMode) {
+            case "mirror":
+                repository = this.openCachedRepository(config, repositoryURI, mode, monitor);
+                break;
+
+            case "single-branch":
+                repository = this.fetchRepository(config, repositoryURI, mode, monitor);
+                break;
+
+            case "in-memory":
+                repository = this.fetchInMemoryRepository(config, repositoryURI, mode, monitor);
+                break;
+
+            case "partial":
+                repository = this.fetchPartialRepository(config, repositoryURI, mode, monitor);
+                break;
+
+            case "bundle":
+                repository = this.openBundleRepository(config, repositoryURI, monitor);
+                break;
+
+            case "local":
+                repository = this.openLocalRepository(config, repositoryURI);
+                break;
+
+            case "clone":
+                repository = this.cloneRepository(config, repositoryURI, mode, monitor);
+                break;
+
+            default:
+                throw new ConfigException.BadValue("fetch.mode", String.format("Unknown fetch mode %s.", fetchMode));
+        }
+
+        this.metricsListener.onFetch(repositoryURI, fetchMode, monitor.getElapsedTime(), monitor.getReceivedObjects());
+        return repository;
+    }
+
+    /**
+     * Opens the repository from the fastest of the primary URI and its
+     * mirrors, as hedged by {@link #hedge}. The first repository holding the
+     * target ref is used, the other attempts are cancelled and their
+     * repositories released.
+     *
+     * @param config        Config file
+     * @param repositoryURI Primary repository URI
+     * @param mode          Auth mode
+     * @return URI the repository was fetched from, and the repository
+     */
+    private Map.Entry<String, Repository> openFastestRepository(final Config config,
+                                                               final String repositoryURI,
+                                                               final String mode) throws GitAPIException, IOException {
+        return this.hedge(
+            config,
+            repositoryURI,
+            (uri, cancellation) -> this.openRepository(config, uri, mode, cancellation),
+            repository -> {
+                try {
+                    Workspace.release(repository);
+                } catch (final IOException ignore) {
+                    // Best effort, stale directories are swept later
+                }
+            }
+        );
+    }
+
+    /**
+     * Runs an operation against the fastest of the primary URI and its
+     * mirrors. The mirrors are tried in the declared order: when an attempt
+     * didn't complete after {@code hedge-delay}, or as soon as it fails, the
+     * next mirror is tried concurrently. The first result is used, the other
+     * attempts are cancelled and their results discarded. If every attempt
+     * fails, a remote answering with an error takes precedence over a remote
+     * that can't be reached.
+     *
+     * @param config        Config file
+     * @param repositoryURI Primary repository URI
+     * @param operation     Operation to run against each URI
+     * @param discard       Discards the result of an attempt which lost the race
+     * @param <T>           Type of the result
+     * @return URI the result comes from, and the result
+     */
+    private <T> Map.Entry<String, T> hedge(final Config config,
+                                           final String repositoryURI,
+                                           final HedgedOperation<T> operation,
+                                           final Consumer<T> discard) throws GitAPIException, IOException {
+        final List<String> uris = new ArrayList<>();
+        uris.add(repositoryURI);
+        uris.addAll(getMirrors(config));
+        if (uris.size() == 1) {
+            return new AbstractMap.SimpleImmutableEntry<>(repositoryURI, operation.run(repositoryURI, () -> false));
+        }
+
+        final long hedgeDelay = config.hasPath("hedge-delay") ? config.getDuration("hedge-delay", TimeUnit.MILLISECONDS) : 2000L;
+        final BlockingQueue<CompletableFuture<T>> completed = new LinkedBlockingQueue<>();
+        final List<CompletableFuture<T>> attempts = new ArrayList<>(uris.size());
+        final List<Future<?>> tasks = new ArrayList<>(uris.size());
+        T winner = null;
+        try {
+            Throwable failure = null;
+            int pending = 0;
+            while (true) {
+                if (attempts.size() < uris.size()) {
+                    final String uri = uris.get(attempts.size());
+                    final CompletableFuture<T> attempt = new CompletableFuture<>();
+                    attempt.whenComplete((result, ex) -> completed.add(attempt));
+                    attempts.add(attempt);
+                    tasks.add(GitProvider.LOADER.submit(() -> {
+                        try {
+                            final T result = operation.run(uri, attempt::isCancelled);
+                            if (!attempt.complete(result)) {
+                                // Lost the race once completed
+                                discard.accept(result);
+                            }
+                        } catch (final GitAPIException | IOException | RuntimeException ex) {
+                            attempt.completeExceptionally(ex);
+                        }
+                    }));
+                    ++pending;
+                }
+
+                final CompletableFuture<T> attempt = attempts.size() < uris.size()
+                    ? completed.poll(hedgeDelay, TimeUnit.MILLISECONDS)
+                    : completed.take();
+                if (attempt == null) {
+                    // Too slow, hedge on the next mirror
+                    continue;
+                }
+                --pending;
+                try {
+                    winner = attempt.join();
+                    return new AbstractMap.SimpleImmutableEntry<>(uris.get(attempts.indexOf(attempt)), winner);
+                } catch (final CompletionException ex) {
+                    if (failure == null || failure instanceof InvalidRemoteException || failure instanceof TransportException) {
+                        failure = ex.getCause();
+                    }
+                    if (pending == 0 && attempts.size() == uris.size()) {
+                        throw rethrowFetchFailure(failure);
+                    }
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching the repository.");
+        } finally {
+            // Running fetches are aborted by their progress monitor and
+            // discard their result, the completed ones are discarded here
+            final T kept = winner;
+            for (final CompletableFuture<T> attempt : attempts) {
+                if (!attempt.cancel(false)) {
+                    attempt.thenAccept(result -> {
+                        if (result != kept) {
+                            discard.accept(result);
+                        }
+                    });
+                }
+            }
+            for (final Future<?> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Get the mirrors of the repository.
+     *
+     * @param config Config file
+     * @return Mirror URIs, in the declared order
+     */
+    private static List<String> getMirrors(final Config config) {
+        final List<String> mirrors = new ArrayList<>();
+        if (config.hasPath("mirrors")) {
+            for (final String mirror : config.getStringList("mirrors")) {
+                if (!mirror.trim().isEmpty()) {
+                    mirrors.add(mirror.trim());
+                }
+            }
+        }
+        return mirrors;
+    }
+
+    /**
+     * Rethrows the failure of a fetch attempt.
+     *
+     * @param failure Failure of the fetch
+     * @return Never returns, declared to be thrown by the caller
+     */
+    private static IOException rethrowFetchFailure(final Throwable failure) throws GitAPIException, IOException {
+        if (failure instanceof GitAPIException) {
+            throw (GitAPIException) failure;
+        } else if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IOException(failure.getMessage(), failure);
+    }
+
+    /**
+     * Clones main branch of Git repository.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param monitor       Progress monitor
+     * @return Repository
+     */
+    private Repository cloneRepository(final Config config,
+                                       final String repositoryURI,
+                                       final String mode,
+                                       final ProgressMonitor monitor) throws GitAPIException, IOException {
+        final File repoDir = Workspace.createDirectory(config);
+        try {
+            final TargetRef target = TargetRef.of(config);
+            final CloneCommand cloneCommand = Git.cloneRepository()
+                .setURI(repositoryURI)
+                .setDirectory(repoDir)
+                .setProgressMonitor(monitor);
+            if (!Objects.equals(target.getSource(), Constants.HEAD)) {
+                cloneCommand.setBranch(target.getSource());
+            }
+            this.configureTransport(cloneCommand, config, mode);
+
+            final Repository repository = cloneCommand.call().getRepository();
+            return target.getCommit() == null ? repository : this.detachHead(repository, target);
+        } catch (final GitAPIException | IOException | RuntimeException ex) {
+            Workspace.delete(repoDir);
+            throw ex;
+        }
+    }
+
+    /**
+     * Fetches only the target ref into a bare repository. Tags, other
+     * branches and the working tree checkout are skipped. The local HEAD is
+     * detached on the fetched commit.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param monitor       Progress monitor
+     * @return Repository
+     */
+    private Repository fetchRepository(final Config config,
+                                       final String repositoryURI,
+                                       final String mode,
+                                       final ProgressMonitor monitor) throws GitAPIException, IOException {
+        final Git git = initWorkspaceRepository(config);
+        try {
+            final TargetRef target = TargetRef.of(config);
+            this.fetchTarget(git, config, repositoryURI, mode, target, monitor);
+
+            return this.detachHead(git.getRepository(), target);
+        } catch (final GitAPIException | IOException | RuntimeException ex) {
+            Workspace.release(git.getRepository());
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates an empty bare repository in a new temporary directory.
+     *
+     * @param config Config file
+     * @return Repository
+     */
+    private static Git initWorkspaceRepository(final Config config) throws GitAPIException, IOException {
+        final File repoDir = Workspace.createDirectory(config);
+        try {
+            return Git.init()
+                .setBare(true)
+                .setDirectory(repoDir)
+                .call();
+        } catch (final GitAPIException | RuntimeException ex) {
+            Workspace.delete(repoDir);
+            throw ex;
+        }
+    }
+
+    /**
+     * Fetches only the target ref into a repository kept in memory. Nothing
+     * is written on the disk and the repository is released with the last
+     * reference on it.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param monitor       Progress monitor
+     * @return Repository
+     */
+    private Repository fetchInMemoryRepository(final Config config,
+                                               final String repositoryURI,
+                                               final String mode,
+                                               final ProgressMonitor monitor) throws GitAPIException, IOException {
+        final InMemoryRepository repository = new InMemoryRepository.Builder()
+            .setRepositoryDescription(new DfsRepositoryDescription("play-rconf"))
+            .build();
+        final TargetRef target = TargetRef.of(config);
+        this.fetchTarget(Git.wrap(repository), config, repositoryURI, mode, target, monitor);
+
+        return this.detachHead(repository, target);
+    }
+
+    /**
+     * Fetches the remote ref without any blob into a bare repository, then
+     * fetches only the blobs of the configuration files. Falls back to a
+     * single-branch fetch if the server doesn't support filtering or
+     * fetching an object by id.
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param monitor       Fetch progress monitor
+     * @return Repository
+     */
+    private Repository fetchPartialRepository(final Config config,
+                                              final String repositoryURI,
+                                              final String mode,
+                                              final ProgressMonitor monitor) throws GitAPIException, IOException {
+        final Git git = initWorkspaceRepository(config);
+        try {
+            final TargetRef target = TargetRef.of(config);
+            this.fetchTarget(git, config, repositoryURI, mode, target, monitor, FilterSpec.withBlobLimit(0));
+            final Repository repository = this.detachHead(git.getRepository(), target);
+            this.findFiles(
+                config,
+                repositoryURI,
+                mode,
+                repository,
+                repository.parseCommit(repository.resolve(Constants.HEAD)),
+                ConfigFileReader.getFilepaths(config)
+            );
+            return repository;
+        } catch (final TransportException | MissingObjectException ignore) {
+            // The server doesn't support partial fetches
+            Workspace.release(git.getRepository());
+            return this.fetchRepository(config, repositoryURI, mode, monitor);
+        } catch (final GitAPIException | IOException | RuntimeException ex) {
+            Workspace.release(git.getRepository());
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads a Git bundle file into a repository kept in memory. Nothing is
+     * fetched from the network and nothing is written on the disk.
+     *
+     * @param config        Config file
+     * @param repositoryURI Path or file URI of the bundle
+     * @param monitor       Progress monitor
+     * @return Repository
+     */
+    private Repository openBundleRepository(final Config config,
+                                            final String repositoryURI,
+                                            final ProgressMonitor monitor) throws GitAPIException, IOException {
+        final File bundleFile = toLocalFile(repositoryURI);
+        if (!bundleFile.isFile()) {
+            throw new FileNotFoundException(String.format("Bundle (%s) not found.", bundleFile));
+        }
+
+        final InMemoryRepository repository = new InMemoryRepository.Builder()
+            .setRepositoryDescription(new DfsRepositoryDescription("play-rconf"))
+            .build();
+        final TargetRef target = TargetRef.of(config);
+        try (final InputStream is = new BufferedInputStream(Files.newInputStream(bundleFile.toPath()));
+             final Transport transport = new TransportBundleStream(repository, new URIish(bundleFile.toURI().toString()), is)) {
+            transport.fetch(
+                monitor,
+                Collections.singletonList(target.getCommit() == null ? target.toRefSpec() : new RefSpec("+refs/*:refs/*"))
+            );
+        } catch (final URISyntaxException ex) {
+            throw new MalformedURLException(ex.getMessage());
+        }
+
+        return this.detachHead(repository, target);
+    }
+
+    /**
+     * Reads a repository available on the local filesystem. Its objects are
+     * not copied: a temporary bare repository borrows them through the Git
+     * alternates mechanism, so the source repository is never modified.
+     *
+     * @param config        Config file
+     * @param repositoryURI Path or file URI of the repository
+     * @return Repository
+     */
+    private Repository openLocalRepository(final Config config, final String repositoryURI) throws GitAPIException, IOException {
+        final TargetRef target = TargetRef.of(config);
+        final ObjectId commitId;
+        final File objectsDir;
+        try (final Git source = Git.open(toLocalFile(repositoryURI))) {
+            if (target.getCommit() == null) {
+                commitId = source.getRepository().resolve(target.getSource() + "^{commit}");
+            } else {
+                commitId = source.getRepository().getObjectDatabase().has(target.getCommit()) ? target.getCommit() : null;
+            }
+            objectsDir = new File(source.getRepository().getDirectory(), Constants.OBJECTS).getAbsoluteFile();
+        }
+        if (commitId == null) {
+            throw new IllegalArgumentException(String.format("Ref (%s) not found.", target));
+        }
+
+        return borrowObjects(config, objectsDir, commitId);
+    }
+
+    /**
+     * Creates a temporary bare repository borrowing the objects of another
+     * repository through the Git alternates mechanism. Its detached HEAD
+     * points to the given commit, so concurrent readers of the same objects
+     * never share a HEAD.
+     *
+     * @param config     Config file
+     * @param objectsDir Objects directory of the borrowed repository
+     * @param commitId   Commit to read
+     * @return Repository
+     */
+    private static Repository borrowObjects(final Config config, final File objectsDir, final ObjectId commitId) throws GitAPIException, IOException {
+        final File repoDir;
+        try (final Git git = initWorkspaceRepository(config)) {
+            repoDir = git.getRepository().getDirectory();
+        }
+        try {
+            final File alternates = new File(repoDir, Constants.OBJECTS + "/info/alternates");
+            Files.createDirectories(alternates.getParentFile().toPath());
+            Files.write(alternates.toPath(), (objectsDir.getAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8));
+
+            final Repository repository = Git.open(repoDir).getRepository();
+            final RefUpdate refUpdate = repository.updateRef(Constants.HEAD, true);
+            refUpdate.setNewObjectId(commitId);
+            refUpdate.forceUpdate();
+            return repository;
+        } catch (final IOException | RuntimeException ex) {
+            Workspace.delete(repoDir);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the local file designated by a path or a file URI.
+     *
+     * @param repositoryURI Path or file URI
+     * @return Local file
+     */
+    private static File toLocalFile(final String repositoryURI) {
+        return repositoryURI.startsWith("file:") ? new File(URI.create(repositoryURI)) : new File(repositoryURI);
+    }
+
+    /**
+     * Opens the bare mirror kept in the cache directory, creating it on the
+     * first run, and fetches the new objects of the target ref. If the remote
+     * can't be reached, the last fetched commit is used. A pinned commit
+     * already in the mirror is used without contacting the remote.
+     * <p>
+     * The mirror is locked while it is updated. Threads and processes which
+     * waited for the lock while the same target ref was fetched use the
+     * mirror just updated without fetching again. The returned repository borrows the objects of the mirror, so
+     * concurrent loadings of different refs don't move each other's HEAD.
+     * </p>
+     *
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param monitor       Progress monitor
+     * @return Repository
+     */
+    private Repository openCachedRepository(final Config config,
+                                            final String repositoryURI,
+                                            final String mode,
+                                            final ProgressMonitor monitor) throws GitAPIException, IOException {
+        final File mirrorDir = new File(
+            config.getString("cache.directory").trim(),
+            String.format("%s.git", cacheKey(repositoryURI))
+        );
+        final TargetRef target = TargetRef.of(config);
+        Files.createDirectories(mirrorDir.getParentFile().toPath());
+        // Another loading may have fetched a different ref of the mirror, so
+        // the fetches are counted per target ref
+        final File generationFile = new File(
+            mirrorDir.getParentFile(),
+            String.format("%s.%s.generation", mirrorDir.getName(), cacheKey(target.toString()))
+        );
+        try (final MirrorLock lock = MirrorLock.acquire(new File(mirrorDir.getParentFile(), mirrorDir.getName() + ".lock"), generationFile);
+             final Git git = this.openMirror(mirrorDir)) {
+            ObjectId commitId = lock.isUpdatedWhileWaiting() ? target.resolve(git.getRepository()) : null;
+            if (commitId == null) {
+                commitId = this.updateMirror(git, config, repositoryURI, mode, target, monitor);
+                lock.markUpdated();
+            }
+            return borrowObjects(config, new File(git.getRepository().getDirectory(), Constants.OBJECTS), commitId);
+        }
+    }
+
+    /**
+     * Opens the bare mirror, creating it on the first run.
+     *
+     * @param mirrorDir Mirror directory
+     * @return Mirror
+     */
+    private Git openMirror(final File mirrorDir) throws GitAPIException, IOException {
+        if (new File(mirrorDir, Constants.OBJECTS).isDirectory()) {
+            return Git.open(mirrorDir);
+        }
+
+        Files.createDirectories(mirrorDir.toPath());
+        return Git.init()
+            .setBare(true)
+            .setDirectory(mirrorDir)
+            .call();
+    }
+
+    /**
+     * Fetches the new objects of the target ref into the mirror. If the
+     * remote can't be reached, the last fetched commit is used.
+     *
+     * @param git           Mirror
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param target        Remote ref to fetch
+     * @param monitor       Progress monitor
+     * @return Commit to read
+     */
+    private ObjectId updateMirror(final Git git,
+                                  final Config config,
+                                  final String repositoryURI,
+                                  final String mode,
+                                  final TargetRef target,
+                                  final ProgressMonitor monitor) throws GitAPIException, IOException {
+        try {
+            this.fetchTarget(git, config, repositoryURI, mode, target, monitor);
+        } catch (final InvalidRemoteException | TransportException ex) {
+            if (target.resolve(git.getRepository()) == null) {
+                throw ex;
+            }
+        }
+
+        final ObjectId commitId = target.resolve(git.getRepository());
+        if (commitId == null) {
+            throw new IllegalArgumentException(String.format("Ref (%s) not found.", target));
+        }
+        return commitId;
+    }
+
+    /**
+     * Fetches the target ref, without tags. A pinned commit is fetched by id
+     * if the server allows it, otherwise the ref containing it is fetched.
+     * Nothing is fetched if the pinned commit is already in the repository.
+     *
+     * @param git           Local repository
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param target        Remote ref to fetch
+     * @param monitor       Progress monitor
+     */
+    void fetchTarget(final Git git,
+                     final Config config,
+                     final String repositoryURI,
+                     final String mode,
+                     final TargetRef target,
+                     final ProgressMonitor monitor) throws GitAPIException, IOException {
+        this.fetchTarget(git, config, repositoryURI, mode, target, monitor, FilterSpec.NO_FILTER);
+    }
+
+    /**
+     * Fetches the target ref, without tags and without the objects excluded
+     * by the filter.
+     *
+     * @param git           Local repository
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param target        Remote ref to fetch
+     * @param monitor       Progress monitor
+     * @param filterSpec    Objects filter
+     */
+    private void fetchTarget(final Git git,
+                             final Config config,
+                             final String repositoryURI,
+                             final String mode,
+                             final TargetRef target,
+                             final ProgressMonitor monitor,
+                             final FilterSpec filterSpec) throws GitAPIException, IOException {
+        if (target.getCommit() != null) {
+            if (target.resolve(git.getRepository()) != null) {
+                return;
+            }
+
+            try {
+                this.fetch(git, config, repositoryURI, mode, Collections.singletonList(target.toCommitRefSpec()), monitor, filterSpec);
+                if (target.resolve(git.getRepository()) != null) {
+                    return;
+                }
+            } catch (final TransportException ignore) {
+                // The server doesn't allow fetching a commit by id
+            }
+        }
+
+        this.fetch(git, config, repositoryURI, mode, Collections.singletonList(target.toRefSpec()), monitor, filterSpec);
+    }
+
+    /**
+     * Fetches a ref spec without tags.
+     *
+     * @param git           Local repository
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param refSpec       Ref spec to fetch
+     * @param monitor       Progress monitor
+     */
+    private void fetch(final Git git,
+                       final Config config,
+                       final String repositoryURI,
+                       final String mode,
+                       final RefSpec refSpec,
+                       final ProgressMonitor monitor) throws GitAPIException {
+        this.fetch(git, config, repositoryURI, mode, Collections.singletonList(refSpec), monitor, FilterSpec.NO_FILTER);
+    }
+
+    /**
+     * Fetches ref specs without tags, asking the server to omit the objects
+     * excluded by the filter.
+     *
+     * @param git           Local repository
+     * @param config        Config file
+     * @param repositoryURI Repository URI using HTTPS or SSH
+     * @param mode          Auth mode
+     * @param refSpecs      Ref specs to fetch
+     * @param monitor       Fetch progress monitor
+     * @param filterSpec    Objects filter
+     */
+    private void fetch(final Git git,
+                       final Config config,
+                       final String repositoryURI,
+                       final String mode,
+                       final List<RefSpec> refSpecs,
+                       final ProgressMonitor monitor,
+                       final FilterSpec filterSpec) throws GitAPIException {
+        final FetchCommand fetchCommand = git.fetch()
+            .setRemote(repositoryURI)
+            .setRefSpecs(refSpecs)
+            .setTagOpt(TagOpt.NO_TAGS)
+            .setProgressMonitor(monitor);
+        this.configureTransport(fetchCommand, config, mode, filterSpec);
+        fetchCommand.call();
+    }
+
+    /**
+     * Detaches the HEAD of a repository on the target commit.
+     *
+     * @param repository Local repository
+     * @param target     Fetched ref
+     * @return Repository
+     */
+    Repository detachHead(final Repository repository, final TargetRef target) throws IOException {
+        final ObjectId commitId = target.resolve(repository);
+        if (commitId == null) {
+            throw new IllegalArgumentException(String.format("Ref (%s) not found.", target));
+        }
+
+        final RefUpdate refUpdate = repository.updateRef(Constants.HEAD, true);
+        refUpdate.setNewObjectId(commitId);
+        refUpdate.forceUpdate();
+        return repository;
+    }
+
+    /**
+     * Configures authentication of a command talking to the remote repository.
+     *
+     * @param command Clone or fetch command
+     * @param config  Config file
+     * @param mode    Auth mode
+     */
+    private void configureTransport(final TransportCommand<?, ?> command, final Config config, final String mode) {
+        this.configureTransport(command, config, mode, FilterSpec.NO_FILTER);
+    }
+
+    /**
+     * Configures authentication and objects filter of a command talking to
+     * the remote repository.
+     *
+     * @param command    Clone or fetch command
+     * @param config     Config file
+     * @param mode       Auth mode
+     * @param filterSpec Objects filter
+     */
+    private void configureTransport(final TransportCommand<?, ?> command,
+                                    final Config config,
+                                    final String mode,
+                                    final FilterSpec filterSpec) {
+        final SshSessionFactory sshSessionFactory;
+        switch (mode) {
+            case "ssh-rsa":
+                // SSH configuration (Optional password)
+                final String privateKey = config.getString("ssh-rsa.private-key");
+                final String password = config.hasPath("ssh-rsa.password")
+                    ? config.getString("ssh-rsa.password") : null;
+                final long keepAlive = config.hasPath("ssh-rsa.keep-alive")
+                    ? config.getDuration("ssh-rsa.keep-alive", TimeUnit.NANOSECONDS) : TimeUnit.SECONDS.toNanos(30);
+                sshSessionFactory = CachedSshSessionFactory.of(privateKey, password, keepAlive, (int) getTimeout(config, "connect", 30000));
+                break;
+
+            case "user":
+                final String login = config.getString("user.login");
+                final String secret = config.getString("user.password");
+                command.setCredentialsProvider(GitProvider.CREDENTIALS_PROVIDERS.computeIfAbsent(
+                    cacheKey(login, secret),
+                    key -> new UsernamePasswordCredentialsProvider(login, secret)
+                ));
+                sshSessionFactory = null;
+                break;
+
+            default:
+                // Public repository over HTTPS
+                sshSessionFactory = null;
+                break;
+        }
+
+        final long transferTimeout = getTimeout(config, "transfer", 60000);
+        if (transferTimeout > 0) {
+            // Seconds without any data received before aborting
+            command.setTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(transferTimeout + 999)));
+        }
+        command.setTransportConfigCallback(transport -> {
+            if (sshSessionFactory != null) {
+                final SshTransport sshTransport = (SshTransport) transport;
+                sshTransport.setSshSessionFactory(sshSessionFactory);
+            }
+            transport.setFilterSpec(filterSpec);
+        });
+    }
+
+    /**
+     * Operation run against a repository URI by {@link #hedge}.
+     *
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    private interface HedgedOperation<T> {
+
+        /**
+         * Runs the operation.
+         *
+         * @param repositoryURI Repository URI
+         * @param cancellation  Tells if the attempt is cancelled
+         * @return Result
+         */
+        T run(String repositoryURI, BooleanSupplier cancellation) throws GitAPIException, IOException;
+
+    }
+
+    /**
+     * Loads data from a single repository.
+     *
+     * @param <T> Type of the loaded data
+     */
+    @FunctionalInterface
+    private interface RepositoryLoader<T> {
+
+        /**
+         * Loads the data.
+         *
+         * @param repositoryURI Repository URI using HTTPS or SSH
+         * @param filepaths     Paths to retrieve the config content
+         * @param mode          Auth mode
+         * @return Loaded data
+         */
+        T load(String repositoryURI, List<String> filepaths, String mode) throws GitAPIException, IOException;
 
-        final byte[] bytes = repository.open(walk.getObjectId(0)).getBytes();
-        return new String(bytes, StandardCharsets.UTF_8);
     }
 
 }
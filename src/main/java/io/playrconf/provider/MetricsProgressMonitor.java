@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Progress monitor forwarding the JGit tasks durations to a
+ * {@link GitMetricsListener}. It also aborts the fetch once it is
+ * cancelled: JGit ignores interruptions while blocked on a socket, but
+ * checks the monitor between the objects it receives.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class MetricsProgressMonitor implements ProgressMonitor {
+
+    /**
+     * Listener receiving the metrics.
+     */
+    private final GitMetricsListener listener;
+
+    /**
+     * Repository URI.
+     */
+    private final String repositoryURI;
+
+    /**
+     * Tells if the fetch is cancelled.
+     */
+    private final BooleanSupplier cancellation;
+
+    /**
+     * When the monitor was created.
+     */
+    private final long startTime;
+
+    /**
+     * Has the first task begun?
+     */
+    private boolean connected;
+
+    /**
+     * Current task title.
+     */
+    private String task;
+
+    /**
+     * When the current task began.
+     */
+    private long taskStartTime;
+
+    /**
+     * Units of work completed on the current task.
+     */
+    private int taskWork;
+
+    /**
+     * Number of objects received.
+     */
+    private long receivedObjects;
+
+    /**
+     * Build a new instance.
+     *
+     * @param listener      Listener receiving the metrics
+     * @param repositoryURI Repository URI
+     * @param cancellation  Tells if the fetch is cancelled
+     */
+    MetricsProgressMonitor(final GitMetricsListener listener, final String repositoryURI, final BooleanSupplier cancellation) {
+        this.listener = listener;
+        this.repositoryURI = repositoryURI;
+        this.cancellation = cancellation;
+        this.startTime = System.nanoTime();
+    }
+
+    @Override
+    public void start(final int totalTasks) {
+        // Tasks are reported one by one
+    }
+
+    @Override
+    public void beginTask(final String title, final int totalWork) {
+        final long now = System.nanoTime();
+        if (!this.connected) {
+            this.connected = true;
+            this.listener.onConnect(this.repositoryURI, now - this.startTime);
+        }
+        this.task = title;
+        this.taskStartTime = now;
+        this.taskWork = 0;
+    }
+
+    @Override
+    public void update(final int completed) {
+        this.taskWork += completed;
+    }
+
+    @Override
+    public void endTask() {
+        if (this.task == null) {
+            return;
+        }
+
+        this.listener.onTask(this.repositoryURI, this.task, System.nanoTime() - this.taskStartTime, this.taskWork);
+        if (this.task.equals(JGitText.get().receivingObjects)) {
+            this.receivedObjects += this.taskWork;
+        }
+        this.task = null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        // The fetching thread is interrupted when the total timeout expires
+        return this.cancellation.getAsBoolean() || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Get the time elapsed since the monitor was created.
+     *
+     * @return Duration in nanoseconds
+     */
+    long getElapsedTime() {
+        return System.nanoTime() - this.startTime;
+    }
+
+    /**
+     * Get the number of objects received.
+     *
+     * @return Number of objects
+     */
+    long getReceivedObjects() {
+        return this.receivedObjects;
+    }
+
+}
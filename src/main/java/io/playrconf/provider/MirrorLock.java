@@ -0,0 +1,184 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a mirror shared by several threads or processes. Each
+ * target ref has a generation file holding a number incremented after each
+ * fetch of this ref, so a process which waited for the lock knows if the
+ * ref it needs was fetched in the meantime and doesn't need to fetch again.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class MirrorLock implements Closeable {
+
+    /**
+     * In process locks by lock file. File locks are held by the whole JVM,
+     * they don't exclude the threads of a same process.
+     */
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * In process lock.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Lock file channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Generation file channel of the target ref.
+     */
+    private final FileChannel generationChannel;
+
+    /**
+     * Generation read before waiting for the lock.
+     */
+    private final long initialGeneration;
+
+    /**
+     * Build a new instance.
+     *
+     * @param lock              In process lock
+     * @param channel           Lock file channel, holding the file lock
+     * @param generationChannel Generation file channel of the target ref
+     * @param initialGeneration Generation read before waiting for the lock
+     */
+    private MirrorLock(final ReentrantLock lock, final FileChannel channel, final FileChannel generationChannel,
+                       final long initialGeneration) {
+        this.lock = lock;
+        this.channel = channel;
+        this.generationChannel = generationChannel;
+        this.initialGeneration = initialGeneration;
+    }
+
+    /**
+     * Waits for the exclusive lock.
+     *
+     * @param lockFile       Lock file, created if it doesn't exist
+     * @param generationFile Generation file of the target ref, created if it doesn't exist
+     * @return The lock
+     */
+    static MirrorLock acquire(final File lockFile, final File generationFile) throws IOException {
+        final FileChannel generationChannel = open(generationFile);
+        try {
+            final FileChannel channel = open(lockFile);
+            final ReentrantLock lock = MirrorLock.LOCKS.computeIfAbsent(lockFile.getCanonicalPath(), key -> new ReentrantLock());
+            try {
+                final long initialGeneration = readGeneration(generationChannel);
+                lock.lock();
+                try {
+                    channel.lock();
+                    return new MirrorLock(lock, channel, generationChannel, initialGeneration);
+                } catch (final IOException | RuntimeException ex) {
+                    lock.unlock();
+                    throw ex;
+                }
+            } catch (final IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (final IOException | RuntimeException ex) {
+            generationChannel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Tells if the target ref was fetched by another thread or process
+     * while waiting for the lock.
+     *
+     * @return {@code true} if the target ref was fetched
+     */
+    boolean isUpdatedWhileWaiting() throws IOException {
+        return readGeneration(this.generationChannel) != this.initialGeneration;
+    }
+
+    /**
+     * Records a fetch of the target ref.
+     */
+    void markUpdated() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(0, readGeneration(this.generationChannel) + 1);
+        while (buffer.hasRemaining()) {
+            this.generationChannel.write(buffer, buffer.position());
+        }
+        this.generationChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.generationChannel.close();
+            // Releases the file lock
+            this.channel.close();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a file for reading and writing.
+     *
+     * @param file File, created if it doesn't exist
+     * @return File channel
+     */
+    private static FileChannel open(final File file) throws IOException {
+        return FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+    }
+
+    /**
+     * Reads the generation stored in the lock file.
+     *
+     * @param channel Lock file channel
+     * @return Generation, 0 if the lock file is empty
+     */
+    private static long readGeneration(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        int read = 0;
+        while (read >= 0 && buffer.hasRemaining()) {
+            read = channel.read(buffer, buffer.position());
+        }
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+}
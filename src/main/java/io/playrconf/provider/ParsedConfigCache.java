@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local cache of flattened configurations keyed by the paths and ids of the
+ * blobs they were parsed from. Blobs are content addressed, so a cached entry
+ * never needs to be invalidated, as long as the files it includes are
+ * unchanged. The least recently used entries are
+ * evicted once the cache grows over its maximum size.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class ParsedConfigCache {
+
+    /**
+     * Extension of the cache files.
+     */
+    private static final String EXTENSION = ".parsed";
+
+    /**
+     * Default maximum size of the cache in bytes.
+     */
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Cache directory.
+     */
+    private final File directory;
+
+    /**
+     * Maximum size of the cache in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * Build a new instance.
+     *
+     * @param directory Cache directory
+     * @param maxSize   Maximum size of the cache in bytes
+     */
+    ParsedConfigCache(final File directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache set in the configuration.
+     *
+     * @param config Config file
+     * @return The cache, or {@code null} if it is disabled
+     */
+    static ParsedConfigCache of(final Config config) {
+        if (!config.hasPath("cache.parsed.directory") || config.getString("cache.parsed.directory").trim().isEmpty()) {
+            return null;
+        }
+
+        return new ParsedConfigCache(
+            new File(config.getString("cache.parsed.directory").trim()),
+            config.hasPath("cache.parsed.max-size") ? config.getBytes("cache.parsed.max-size") : DEFAULT_MAX_SIZE
+        );
+    }
+
+    /**
+     * Computes the key of a set of configuration files: the digest of their
+     * paths and blob ids in merge order. The paths are part of the key as
+     * the relative includes are resolved against them.
+     *
+     * @param files Blob ids by path, in merge order
+     * @return Cache key
+     */
+    static ObjectId keyOf(final Map<String, ObjectId> files) {
+        final MessageDigest digest = Constants.newMessageDigest();
+        final byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+        for (final Map.Entry<String, ObjectId> file : files.entrySet()) {
+            digest.update(Constants.encode(file.getKey()));
+            digest.update((byte) 0);
+            file.getValue().copyRawTo(rawId, 0);
+            digest.update(rawId);
+        }
+        return ObjectId.fromRaw(digest.digest());
+    }
+
+    /**
+     * Get the cached entries. The files they include are not part of the
+     * key and must be checked by the caller.
+     *
+     * @param key Cache key
+     * @return Flattened entries and included files, or {@code null} if they are not cached
+     */
+    ConfigSnapshot get(final ObjectId key) {
+        final File file = this.fileOf(key);
+        final ConfigSnapshot snapshot = ConfigSnapshot.read(file);
+        if (snapshot == null || !snapshot.getObjectId().equals(key)) {
+            return null;
+        }
+
+        // Keeps track of the last use for the eviction
+        file.setLastModified(System.currentTimeMillis());
+        return snapshot;
+    }
+
+    /**
+     * Stores the entries, then evicts the least recently used entries if
+     * the cache is too big.
+     *
+     * @param key           Cache key
+     * @param entries       Flattened entries
+     * @param includedFiles Blob ids of the included files by path
+     */
+    void put(final ObjectId key, final List<ConfigEntry> entries, final Map<String, ObjectId> includedFiles) throws IOException {
+        new ConfigSnapshot(key, entries, includedFiles).write(this.fileOf(key));
+        this.evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in its
+     * maximum size.
+     */
+    private void evict() {
+        final File[] files = this.directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (final File file : files) {
+            size += file.length();
+        }
+        if (size <= this.maxSize) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (final File file : files) {
+            if (size <= this.maxSize) {
+                break;
+            }
+            final long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Get the file holding the entries of a key.
+     *
+     * @param key Cache key
+     * @return Cache file
+     */
+    private File fileOf(final ObjectId key) {
+        return new File(this.directory, key.name() + EXTENSION);
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Writes the files whose content is another file of the commit. The blobs
+ * are streamed to their target, they never go through the configuration
+ * text. Git LFS pointers are resolved through a local LFS object store.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class ReferencedFiles {
+
+    /**
+     * First line of a Git LFS pointer.
+     */
+    private static final String LFS_POINTER_VERSION = "version https://git-lfs.github.com/spec/v1";
+
+    /**
+     * Maximum size of a Git LFS pointer.
+     */
+    private static final int LFS_POINTER_MAX_SIZE = 1024;
+
+    /**
+     * Build a new instance.
+     */
+    private ReferencedFiles() {
+    }
+
+    /**
+     * Get the local LFS object store. Unless set, it is the store of the
+     * repository whose objects are borrowed in the {@code local} and mirror
+     * fetch modes, as only these repositories may have one.
+     *
+     * @param config     Config file
+     * @param repository Repository ref
+     * @return Directory using the {@code <oid[0:2]>/<oid[2:4]>/<oid>} layout, {@code null} if there is none
+     */
+    static File getLfsDirectory(final Config config, final Repository repository) throws IOException {
+        if (config.hasPath("lfs.directory") && !config.getString("lfs.directory").trim().isEmpty()) {
+            return new File(config.getString("lfs.directory").trim());
+        }
+        if (repository.getDirectory() == null) {
+            return null;
+        }
+
+        final File alternates = new File(repository.getDirectory(), Constants.OBJECTS + "/info/alternates");
+        if (!alternates.isFile()) {
+            return null;
+        }
+        final List<String> objectsDirs = Files.readAllLines(alternates.toPath(), StandardCharsets.UTF_8);
+        return objectsDirs.isEmpty() ? null : new File(new File(objectsDirs.get(0).trim()).getParentFile(), "lfs/objects");
+    }
+
+    /**
+     * Tells if every referenced file has already been written.
+     *
+     * @param entries Flattened entries
+     * @return {@code true} if no target file is missing
+     */
+    static boolean exist(final List<ConfigEntry> entries) {
+        for (final ConfigEntry entry : entries) {
+            if (entry.getReferencedPath() != null && !new File(entry.getTargetPath()).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a referenced file. The target is replaced atomically.
+     *
+     * @param repository   Repository ref
+     * @param blobId       Id of the referenced blob
+     * @param target       Target file
+     * @param lfsDirectory Local LFS object store (Optional)
+     */
+    static void write(final Repository repository, final ObjectId blobId, final File target, final File lfsDirectory) throws IOException {
+        final ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+        final String pointer = loader.getSize() <= LFS_POINTER_MAX_SIZE
+            ? new String(loader.getCachedBytes(), StandardCharsets.UTF_8) : null;
+        if (pointer == null || !pointer.startsWith(LFS_POINTER_VERSION)) {
+            writeAtomically(target, loader::copyTo);
+            return;
+        }
+
+        String oid = null;
+        long size = -1;
+        for (final String line : pointer.split("\n")) {
+            if (line.startsWith("oid sha256:")) {
+                oid = line.substring("oid sha256:".length()).trim();
+            } else if (line.startsWith("size ")) {
+                size = Long.parseLong(line.substring("size ".length()).trim());
+            }
+        }
+        if (oid == null || oid.length() < 5 || size < 0) {
+            throw new IllegalArgumentException(String.format("Invalid LFS pointer (%s).", blobId.name()));
+        }
+
+        if (lfsDirectory == null) {
+            throw new IllegalArgumentException(String.format("Setting (lfs.directory) is required to resolve the LFS pointer (%s).", blobId.name()));
+        }
+        final File lfsObject = new File(lfsDirectory, oid.substring(0, 2) + File.separator + oid.substring(2, 4) + File.separator + oid);
+        if (!lfsObject.isFile() || lfsObject.length() != size) {
+            throw new IllegalArgumentException(String.format("LFS object (%s) not found.", oid));
+        }
+
+        final String expectedOid = oid;
+        writeAtomically(target, out -> {
+            final MessageDigest digest = newSha256();
+            try (final InputStream in = new DigestInputStream(Files.newInputStream(lfsObject.toPath()), digest)) {
+                final byte[] buffer = new byte[8192];
+                int read = in.read(buffer);
+                while (read >= 0) {
+                    out.write(buffer, 0, read);
+                    read = in.read(buffer);
+                }
+            }
+            if (!toHex(digest.digest()).equals(expectedOid)) {
+                throw new IOException(String.format("LFS object (%s) is corrupted.", expectedOid));
+            }
+        });
+    }
+
+    /**
+     * Writes a file into a temporary file, then moves it to its target.
+     *
+     * @param target Target file
+     * @param writer Writes the content
+     */
+    private static void writeAtomically(final File target, final ContentWriter writer) throws IOException {
+        final Path targetPath = target.getAbsoluteFile().toPath();
+        Files.createDirectories(targetPath.getParent());
+        final Path tmp = Files.createTempFile(targetPath.getParent(), target.getName(), ".tmp");
+        try {
+            try (final OutputStream out = Files.newOutputStream(tmp)) {
+                writer.write(out);
+            }
+            Files.move(tmp, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Get the lowercase hexadecimal form of a digest.
+     *
+     * @param digest Digest bytes
+     * @return Hexadecimal string
+     */
+    private static String toHex(final byte[] digest) {
+        final StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (final byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get a new SHA-256 digest.
+     *
+     * @return Message digest
+     */
+    private static MessageDigest newSha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes a file content.
+     */
+    @FunctionalInterface
+    private interface ContentWriter {
+
+        /**
+         * Writes the content.
+         *
+         * @param out Output stream
+         */
+        void write(OutputStream out) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The remote ref holding the configuration to read: remote HEAD, a branch,
+ * a tag, and optionally a pinned commit.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class TargetRef {
+
+    /**
+     * Remote ref name.
+     */
+    private final String source;
+
+    /**
+     * Local ref receiving the remote ref.
+     */
+    private final String destination;
+
+    /**
+     * Pinned commit, can be {@code null}.
+     */
+    private final ObjectId commit;
+
+    /**
+     * Build a new instance.
+     *
+     * @param source      Remote ref name
+     * @param destination Local ref receiving the remote ref
+     * @param commit      Pinned commit, can be {@code null}
+     */
+    private TargetRef(final String source, final String destination, final ObjectId commit) {
+        this.source = source;
+        this.destination = destination;
+        this.commit = commit;
+    }
+
+    /**
+     * Reads the target ref from the {@code branch}, {@code tag} and
+     * {@code commit} keys. Without them, the remote HEAD is used.
+     *
+     * @param config Config file
+     * @return The target ref
+     */
+    static TargetRef of(final Config config) throws ConfigException {
+        final String branch = config.hasPath("branch") ? config.getString("branch").trim() : "";
+        final String tag = config.hasPath("tag") ? config.getString("tag").trim() : "";
+        final String commit = config.hasPath("commit") ? config.getString("commit").trim() : "";
+
+        if (!branch.isEmpty() && !tag.isEmpty()) {
+            throw new ConfigException.BadValue("tag", "Branch and tag can't be used together.");
+        }
+        if (!commit.isEmpty() && !ObjectId.isId(commit)) {
+            throw new ConfigException.BadValue("commit", String.format("Invalid commit id %s.", commit));
+        }
+
+        final ObjectId commitId = commit.isEmpty() ? null : ObjectId.fromString(commit);
+        if (!branch.isEmpty()) {
+            return new TargetRef(Constants.R_HEADS + branch, Constants.R_REMOTES + "origin/" + branch, commitId);
+        } else if (!tag.isEmpty()) {
+            return new TargetRef(Constants.R_TAGS + tag, Constants.R_TAGS + tag, commitId);
+        }
+        return new TargetRef(Constants.HEAD, Constants.R_REMOTES + "origin/" + Constants.HEAD, commitId);
+    }
+
+    /**
+     * Get the remote ref name.
+     *
+     * @return Remote ref name
+     */
+    String getSource() {
+        return this.source;
+    }
+
+    /**
+     * Get the pinned commit.
+     *
+     * @return Pinned commit, or {@code null} if none
+     */
+    ObjectId getCommit() {
+        return this.commit;
+    }
+
+    /**
+     * Get the ref spec fetching the remote ref.
+     *
+     * @return Ref spec
+     */
+    RefSpec toRefSpec() {
+        return new RefSpec().setForceUpdate(true).setSourceDestination(this.source, this.destination);
+    }
+
+    /**
+     * Get the ref spec fetching the pinned commit by id.
+     *
+     * @return Ref spec
+     */
+    RefSpec toCommitRefSpec() {
+        return new RefSpec(this.commit.name());
+    }
+
+    /**
+     * Resolves the commit to read in a local repository.
+     *
+     * @param repository Local repository
+     * @return Commit id, or {@code null} if the commit was not fetched yet
+     */
+    ObjectId resolve(final Repository repository) throws IOException {
+        if (this.commit != null) {
+            return repository.getObjectDatabase().has(this.commit) ? this.commit : null;
+        }
+        return repository.resolve(this.destination + "^{commit}");
+    }
+
+    /**
+     * Finds the commit pointed by the remote ref in the refs advertisement.
+     *
+     * @param advertisedRefs Advertised refs by name
+     * @return Commit id, or {@code null} if the remote ref doesn't exist
+     */
+    ObjectId resolve(final Map<String, Ref> advertisedRefs) {
+        final Ref ref = advertisedRefs.get(this.source);
+        if (ref == null) {
+            return null;
+        }
+        return ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+    }
+
+    @Override
+    public String toString() {
+        return this.commit == null ? this.source : String.format("%s@%s", this.source, this.commit.name());
+    }
+
+}
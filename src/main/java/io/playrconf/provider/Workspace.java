@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the temporary directories holding the fetched repositories. Each
+ * directory is locked by its process while it is in use and deleted once
+ * the configuration is read. The lock file is locked before its directory
+ * is created, and a directory is only deleted by a process holding its
+ * lock, so a directory in use is never swept. Directories left by crashed
+ * processes are no longer locked and are deleted by the next process, as
+ * well as the directories without lock file older than an hour.
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+final class Workspace {
+
+    /**
+     * Prefix of the temporary directories.
+     */
+    private static final String PREFIX = "play-rconf-git-";
+
+    /**
+     * Extension of the lock files, created next to their directory.
+     */
+    private static final String LOCK_EXTENSION = ".lock";
+
+    /**
+     * Age after which an unlocked directory without lock file is stale.
+     */
+    private static final long STALE_AGE = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Open lock files by directory.
+     */
+    private static final ConcurrentMap<File, FileChannel> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Parent directories already swept by this process.
+     */
+    private static final Set<File> SWEPT = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Guards the lock files of this process while they are created or
+     * swept. Locks are held by the whole JVM, a lock file being created
+     * must not be probed by a concurrent sweep.
+     */
+    private static final Object MONITOR = new Object();
+
+    /**
+     * Build a new instance.
+     */
+    private Workspace() {
+    }
+
+    /**
+     * Creates a locked temporary directory. Stale directories are swept the
+     * first time a parent directory is used.
+     *
+     * @param config Config file
+     * @return The directory
+     */
+    static File createDirectory(final Config config) throws IOException {
+        final File parent = (config.hasPath("workspace.directory") && !config.getString("workspace.directory").trim().isEmpty()
+            ? new File(config.getString("workspace.directory").trim())
+            : new File(System.getProperty("java.io.tmpdir"))).getAbsoluteFile();
+        Files.createDirectories(parent.toPath());
+        if (Workspace.SWEPT.add(parent)) {
+            sweep(parent);
+        }
+
+        File directory = null;
+        while (directory == null) {
+            directory = lockNewDirectory(parent);
+        }
+        return directory;
+    }
+
+    /**
+     * Creates and locks a new lock file, then creates its directory.
+     *
+     * @param parent Parent directory
+     * @return The directory, or {@code null} if another process swept the lock file before it was locked
+     */
+    private static File lockNewDirectory(final File parent) throws IOException {
+        synchronized (Workspace.MONITOR) {
+            final File lockFile = Files.createTempFile(parent.toPath(), PREFIX, LOCK_EXTENSION).toFile();
+            final FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE);
+            try {
+                channel.lock();
+                if (!lockFile.exists()) {
+                    // Deleted by a sweep which locked it first
+                    channel.close();
+                    return null;
+                }
+
+                final File directory = directoryOf(lockFile);
+                Files.createDirectory(directory.toPath());
+                Workspace.LOCKS.put(directory.getCanonicalFile(), channel);
+                return directory;
+            } catch (final IOException | RuntimeException ex) {
+                channel.close();
+                Files.deleteIfExists(lockFile.toPath());
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Closes a repository. If it lives in a temporary directory, the
+     * directory is deleted.
+     *
+     * @param repository Repository to release
+     */
+    static void release(final Repository repository) throws IOException {
+        repository.close();
+        if (repository.getDirectory() != null) {
+            delete(repository.isBare() ? repository.getDirectory() : repository.getWorkTree());
+        }
+    }
+
+    /**
+     * Deletes a temporary directory and its lock file. Does nothing if the
+     * directory was not created by {@link #createDirectory(Config)}.
+     *
+     * @param directory Directory to delete
+     */
+    static void delete(final File directory) throws IOException {
+        final FileChannel channel = Workspace.LOCKS.remove(directory.getCanonicalFile());
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+        } finally {
+            channel.close();
+            Files.deleteIfExists(new File(directory.getParentFile(), directory.getName() + LOCK_EXTENSION).toPath());
+        }
+    }
+
+    /**
+     * Deletes the directories whose lock file is no longer locked by any
+     * process. A directory is only deleted while its lock is held. The
+     * directories without lock file, left by older versions, are deleted
+     * once they are stale.
+     *
+     * @param parent Parent directory
+     */
+    private static void sweep(final File parent) {
+        final File[] directories = parent.listFiles(file -> file.isDirectory() && file.getName().startsWith(PREFIX));
+        if (directories != null) {
+            for (final File directory : directories) {
+                final File lockFile = new File(parent, directory.getName() + LOCK_EXTENSION);
+                if (!lockFile.exists() && System.currentTimeMillis() - directory.lastModified() > STALE_AGE) {
+                    try {
+                        FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+                    } catch (final IOException ignore) {
+                        // Not deletable, retried on the next start
+                    }
+                }
+            }
+        }
+
+        final File[] lockFiles = parent.listFiles(
+            file -> file.isFile() && file.getName().startsWith(PREFIX) && file.getName().endsWith(LOCK_EXTENSION)
+        );
+        if (lockFiles == null) {
+            return;
+        }
+
+        for (final File lockFile : lockFiles) {
+            final File directory = directoryOf(lockFile);
+            try {
+                final FileChannel channel;
+                synchronized (Workspace.MONITOR) {
+                    if (Workspace.LOCKS.containsKey(directory.getCanonicalFile())) {
+                        // Used by this process, closing another channel on
+                        // the lock file would release its lock
+                        continue;
+                    }
+                    channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE);
+                }
+
+                try {
+                    if (channel.tryLock() != null) {
+                        // The owner process is gone
+                        FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+                        Files.deleteIfExists(lockFile.toPath());
+                    }
+                } finally {
+                    channel.close();
+                }
+            } catch (final OverlappingFileLockException ignore) {
+                // Used by this process
+            } catch (final IOException ignore) {
+                // Used by another process or not deletable, retried on the next start
+            }
+        }
+    }
+
+    /**
+     * Get the directory of a lock file.
+     *
+     * @param lockFile Lock file
+     * @return The directory, named after the lock file without its extension
+     */
+    private static File directoryOf(final File lockFile) {
+        final String name = lockFile.getName();
+        return new File(lockFile.getParentFile(), name.substring(0, name.length() - LOCK_EXTENSION.length()));
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.SshSessionFactory;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * CachedSshSessionFactoryTest.
+ * <p>
+ * Runs the session pool against stand-in sessions, no SSH server is
+ * required.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CachedSshSessionFactoryTest {
+
+    /**
+     * Remote URI used by the tests.
+     */
+    private static final String REMOTE_URI = "ssh://git@example.com:22/config.git";
+
+    /**
+     * Build a pool handing out stand-in sessions.
+     *
+     * @param keepAlive How long (in milliseconds) an unused session is kept open
+     * @param connected Receives the connection state of every stand-in session
+     * @return The session factory
+     */
+    private static CachedSshSessionFactory newFactory(final long keepAlive, final List<AtomicBoolean> connected) {
+        return new CachedSshSessionFactory(() -> new StandInSessionFactory(connected), "test", TimeUnit.MILLISECONDS.toNanos(keepAlive));
+    }
+
+    @Test
+    public void sshSessionTest_001() throws Exception {
+        final List<AtomicBoolean> connected = new CopyOnWriteArrayList<>();
+        final CachedSshSessionFactory factory = newFactory(60000, connected);
+        final URIish uri = new URIish(REMOTE_URI);
+
+        final RemoteSession first = factory.getSession(uri, null, FS.DETECTED, 0);
+        factory.releaseSession(first);
+        final RemoteSession second = factory.getSession(uri, null, FS.DETECTED, 0);
+        factory.releaseSession(second);
+
+        // The second fetch reuses the session kept open by the first one
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, connected.size());
+        Assert.assertTrue(connected.get(0).get());
+
+        // Concurrent uses of the same host share the session
+        final RemoteSession third = factory.getSession(uri, null, FS.DETECTED, 0);
+        final RemoteSession fourth = factory.getSession(uri, null, FS.DETECTED, 0);
+        Assert.assertSame(third, fourth);
+        factory.releaseSession(third);
+        factory.releaseSession(fourth);
+        Assert.assertEquals(1, connected.size());
+
+        factory.close();
+        Assert.assertFalse(connected.get(0).get());
+    }
+
+    @Test
+    public void sshSessionTest_002() throws Exception {
+        final List<AtomicBoolean> connected = new CopyOnWriteArrayList<>();
+        final CachedSshSessionFactory factory = newFactory(100, connected);
+        final URIish uri = new URIish(REMOTE_URI);
+
+        final RemoteSession first = factory.getSession(uri, null, FS.DETECTED, 0);
+        factory.releaseSession(first);
+        Assert.assertTrue(connected.get(0).get());
+
+        // Unused for longer than the keep alive, the session is disconnected
+        // without waiting for another fetch
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (connected.get(0).get() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertFalse(connected.get(0).get());
+
+        final RemoteSession second = factory.getSession(uri, null, FS.DETECTED, 0);
+        factory.releaseSession(second);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, connected.size());
+        Assert.assertTrue(connected.get(1).get());
+    }
+
+    @Test
+    public void sshSessionTest_003() throws Exception {
+        final List<AtomicBoolean> connected = new CopyOnWriteArrayList<>();
+        final CachedSshSessionFactory factory = newFactory(100, connected);
+        final URIish uri = new URIish(REMOTE_URI);
+
+        // A session in use is kept open past the keep alive
+        final RemoteSession session = factory.getSession(uri, null, FS.DETECTED, 0);
+        Thread.sleep(300);
+        Assert.assertTrue(connected.get(0).get());
+        factory.releaseSession(session);
+    }
+
+    /**
+     * Stand-in factory recording the connection state of its sessions.
+     */
+    private static final class StandInSessionFactory extends SshSessionFactory {
+
+        /**
+         * Receives the connection state of every session.
+         */
+        private final List<AtomicBoolean> connected;
+
+        /**
+         * Build a new instance.
+         *
+         * @param connected Receives the connection state of every session
+         */
+        StandInSessionFactory(final List<AtomicBoolean> connected) {
+            this.connected = connected;
+        }
+
+        /**
+         * Get the type of the sessions created by this factory.
+         *
+         * @return The session type
+         */
+        public String getType() {
+            return "stand-in";
+        }
+
+        @Override
+        public RemoteSession getSession(final URIish uri, final CredentialsProvider credentialsProvider, final FS fs, final int tms) {
+            final AtomicBoolean state = new AtomicBoolean(true);
+            this.connected.add(state);
+            return new RemoteSession() {
+
+                @Override
+                public Process exec(final String commandName, final int timeout) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void disconnect() {
+                    state.set(false);
+                }
+
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,1171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import io.playrconf.sdk.FileCfgObject;
+import io.playrconf.sdk.Provider;
+import io.playrconf.sdk.exception.RemoteConfException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.NotSupportedException;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.BundleWriter;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.TransportProtocol;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GitProviderLocalTest.
+ * <p>
+ * Runs the provider against bare repositories created on the local
+ * filesystem and accessed with the file:// protocol. No environment
+ * variable is required.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class GitProviderLocalTest {
+
+    /**
+     * Remote configuration file content.
+     */
+    private static final String REMOTE_CONFIGURATION = "application {\n"
+        + "    five = 5\n"
+        + "    hello = \"world\"\n"
+        + "    is-enabled = true\n"
+        + "}\n";
+
+    /**
+     * Delay of the slow:// stand-in transport in milliseconds.
+     */
+    private static final long SLOW_TRANSPORT_DELAY = 5000L;
+
+    /**
+     * Counts the slow:// fetches cancelled during their delay.
+     */
+    private static final AtomicInteger SLOW_TRANSPORT_CANCELLATIONS = new AtomicInteger();
+
+    /**
+     * Stand-in transport reading local repositories after a delay, with URIs
+     * like slow:///path/to/remote.git. Kept here because JGit only holds a
+     * weak reference on the registered protocols.
+     */
+    private static final TransportProtocol SLOW_TRANSPORT = new TransportProtocol() {
+
+        @Override
+        public String getName() {
+            return "Slow local repository";
+        }
+
+        @Override
+        public Set<String> getSchemes() {
+            return Collections.singleton("slow");
+        }
+
+        @Override
+        public Transport open(final URIish uri, final Repository local, final String remoteName) throws NotSupportedException, TransportException {
+            try {
+                Thread.sleep(SLOW_TRANSPORT_DELAY);
+            } catch (final InterruptedException ex) {
+                SLOW_TRANSPORT_CANCELLATIONS.incrementAndGet();
+                Thread.currentThread().interrupt();
+                throw new TransportException(uri, "Cancelled");
+            }
+            return Transport.open(local, new URIish().setScheme("file").setPath(uri.getPath()));
+        }
+
+    };
+
+    static {
+        Transport.register(SLOW_TRANSPORT);
+    }
+
+    /**
+     * Temporary folder holding the local repositories.
+     */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Working repository used to push changes to the bare repository.
+     */
+    private File workDir;
+
+    /**
+     * URI of the local bare repository.
+     */
+    private String remoteURI;
+
+    @Before
+    public void setUp() throws Exception {
+        this.workDir = this.temporaryFolder.newFolder("work");
+        try (final Git git = Git.init().setDirectory(this.workDir).call()) {
+            commitFile(git, "conf/application.conf", REMOTE_CONFIGURATION);
+
+            // Unrelated branch holding a lot of objects
+            git.checkout().setCreateBranch(true).setName("heavy").call();
+            for (int i = 0; i < 50; ++i) {
+                commitFile(git, String.format("data/file-%d.bin", i), String.format("payload %d", i));
+            }
+            git.checkout().setName("master").call();
+        }
+
+        final File bareDir = this.temporaryFolder.newFolder("remote.git");
+        Git.cloneRepository()
+            .setURI(this.workDir.toURI().toString())
+            .setDirectory(bareDir)
+            .setBare(true)
+            .setCloneAllBranches(true)
+            .call()
+            .close();
+        this.remoteURI = bareDir.toURI().toString();
+    }
+
+    @Test
+    public void gitLocalTest_001() {
+        final Config initialConfiguration = this.buildConfiguration("git.fetch.mode = \"single-branch\"\n");
+        final Config remoteConfig = loadConfig(initialConfiguration);
+
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals("world", remoteConfig.getString("application.hello"));
+        Assert.assertTrue(remoteConfig.getBoolean("application.is-enabled"));
+    }
+
+    @Test
+    public void gitLocalTest_002() throws Exception {
+        final GitProvider provider = new GitProvider();
+        final Config cloneConfiguration = this.buildConfiguration("git.fetch.mode = \"clone\"\n").getConfig("git");
+        final Config fetchConfiguration = this.buildConfiguration("git.fetch.mode = \"single-branch\"\n").getConfig("git");
+
+        final long clonedObjects = countObjects(provider.openRepository(cloneConfiguration, this.remoteURI, "none"));
+        final long fetchedObjects = countObjects(provider.openRepository(fetchConfiguration, this.remoteURI, "none"));
+
+        // Only the commit, its two trees and the configuration blob are transferred
+        Assert.assertEquals(4, fetchedObjects);
+        Assert.assertTrue(fetchedObjects < clonedObjects);
+    }
+
+    @Test
+    public void gitLocalTest_003() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        final Config initialConfiguration = this.buildConfiguration(
+            "git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+        );
+        Assert.assertEquals("world", loadConfig(initialConfiguration).getString("application.hello"));
+
+        // New objects are fetched into the existing mirror
+        this.pushConfiguration(REMOTE_CONFIGURATION.replace("world", "mirror"));
+        Assert.assertEquals("mirror", loadConfig(initialConfiguration).getString("application.hello"));
+
+        // Remote is unreachable, the cached commit is used
+        final File remoteDir = new File(this.temporaryFolder.getRoot(), "remote.git");
+        Assert.assertTrue(remoteDir.renameTo(new File(this.temporaryFolder.getRoot(), "moved.git")));
+        Assert.assertEquals("mirror", loadConfig(initialConfiguration).getString("application.hello"));
+    }
+
+    @Test
+    public void gitLocalTest_004() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        final Config initialConfiguration = this.buildConfiguration(
+            "git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+        );
+        Assert.assertEquals("world", loadConfig(initialConfiguration).getString("application.hello"));
+
+        // Remote HEAD didn't move, nothing is fetched and the mirror isn't needed
+        final File[] mirrors = cacheDir.listFiles((dir, name) -> name.endsWith(".git"));
+        Assert.assertNotNull(mirrors);
+        Assert.assertEquals(1, mirrors.length);
+        FileUtils.delete(mirrors[0], FileUtils.RECURSIVE);
+        Assert.assertEquals("world", loadConfig(initialConfiguration).getString("application.hello"));
+        Assert.assertFalse(mirrors[0].exists());
+
+        // Remote HEAD moved, the repository is fetched again
+        this.pushConfiguration(REMOTE_CONFIGURATION.replace("world", "snapshot"));
+        Assert.assertEquals("snapshot", loadConfig(initialConfiguration).getString("application.hello"));
+        Assert.assertTrue(mirrors[0].exists());
+    }
+
+    @Test
+    public void gitLocalTest_005() throws Exception {
+        final Config initialConfiguration = this.buildConfiguration("git.fetch.mode = \"in-memory\"\n");
+        final Repository repository = new GitProvider().openRepository(initialConfiguration.getConfig("git"), this.remoteURI, "none");
+        Assert.assertTrue(repository instanceof InMemoryRepository);
+        Assert.assertNull(repository.getDirectory());
+
+        final Config remoteConfig = loadConfig(initialConfiguration);
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals("world", remoteConfig.getString("application.hello"));
+        Assert.assertTrue(remoteConfig.getBoolean("application.is-enabled"));
+    }
+
+    @Test
+    public void gitLocalTest_006() throws Exception {
+        final Config initialConfiguration = this.buildConfiguration("git.watch.interval = 100ms\n");
+        final BlockingQueue<GitConfigChange> changes = new LinkedBlockingQueue<>();
+        try (final GitConfigWatcher watcher = new GitConfigWatcher(initialConfiguration.getConfig("git"))) {
+            watcher.addListener(changes::add);
+            watcher.check();
+            watcher.start();
+
+            this.pushConfiguration(REMOTE_CONFIGURATION.replace("world", "watcher").replace("five = 5", "six = 6"));
+            final GitConfigChange change = changes.poll(30, TimeUnit.SECONDS);
+            Assert.assertNotNull(change);
+            Assert.assertEquals(2, change.getChangedKeys().size());
+            Assert.assertTrue(change.getChangedKeys().contains("application.hello"));
+            Assert.assertTrue(change.getChangedKeys().contains("application.six"));
+            Assert.assertEquals(Collections.singleton("application.five"), change.getRemovedKeys());
+
+            final StringBuilder stringBuilder = new StringBuilder(512);
+            change.apply(keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder), FileCfgObject::apply);
+            final Config changedConfig = ConfigFactory.parseString(stringBuilder.toString());
+            Assert.assertEquals("watcher", changedConfig.getString("application.hello"));
+            Assert.assertFalse(changedConfig.hasPath("application.is-enabled"));
+        }
+    }
+
+    @Test
+    public void gitLocalTest_007() throws Exception {
+        this.pushFile("conf/region/eu.conf", "application { hello = \"region\", region = \"eu\" }");
+        this.pushFile("conf/secrets.conf", "application { hello = \"secret\", password = \"s3cr3t\" }");
+        this.pushFile("other/ignored.conf", "application { region = \"ignored\" }");
+
+        final Config remoteConfig = loadConfig(ConfigFactory.parseString(
+            "git.filepath = [\"/conf/application.conf\", \"conf/region/*.conf\", \"conf/secrets.conf\"]\n"
+        ).withFallback(this.buildConfiguration("")));
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals("eu", remoteConfig.getString("application.region"));
+        Assert.assertEquals("secret", remoteConfig.getString("application.hello"));
+        Assert.assertEquals("s3cr3t", remoteConfig.getString("application.password"));
+    }
+
+    @Test
+    public void gitLocalTest_008() throws Exception {
+        final String initialCommit;
+        try (final Git git = Git.open(this.workDir)) {
+            initialCommit = git.getRepository().resolve("master").name();
+            git.tag().setName("v1").setAnnotated(true).setMessage("Version 1").call();
+            git.checkout().setCreateBranch(true).setName("staging").call();
+            commitFile(git, "conf/application.conf", REMOTE_CONFIGURATION.replace("world", "staging"));
+            git.checkout().setName("master").call();
+            git.push()
+                .setRemote(this.remoteURI)
+                .setRefSpecs(new RefSpec("staging:staging"), new RefSpec("refs/tags/v1:refs/tags/v1"))
+                .call();
+        }
+        this.pushConfiguration(REMOTE_CONFIGURATION.replace("world", "master"));
+
+        for (final String fetchMode : new String[]{"clone", "single-branch", "in-memory"}) {
+            final String extra = "git.fetch.mode = \"" + fetchMode + "\"\n";
+            Assert.assertEquals("master", loadConfig(this.buildConfiguration(extra)).getString("application.hello"));
+            Assert.assertEquals("staging", loadConfig(this.buildConfiguration(extra + "git.branch = \"staging\"\n"))
+                .getString("application.hello"));
+            Assert.assertEquals("world", loadConfig(this.buildConfiguration(extra + "git.tag = \"v1\"\n"))
+                .getString("application.hello"));
+            Assert.assertEquals("world", loadConfig(this.buildConfiguration(extra + "git.commit = \"" + initialCommit + "\"\n"))
+                .getString("application.hello"));
+        }
+
+        // Pinned commit already in the mirror, the remote is not needed anymore
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        final Config pinnedConfiguration = this.buildConfiguration(
+            "git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+                + "git.cache.skip-if-unchanged = false\n"
+                + "git.commit = \"" + initialCommit + "\"\n"
+        );
+        Assert.assertEquals("world", loadConfig(pinnedConfiguration).getString("application.hello"));
+        final File remoteDir = new File(this.temporaryFolder.getRoot(), "remote.git");
+        Assert.assertTrue(remoteDir.renameTo(new File(this.temporaryFolder.getRoot(), "moved.git")));
+        Assert.assertEquals("world", loadConfig(pinnedConfiguration).getString("application.hello"));
+    }
+
+    @Test(expected = ConfigException.BadValue.class)
+    public void gitLocalTest_009() {
+        loadConfig(this.buildConfiguration("git.branch = \"master\"\ngit.tag = \"v1\"\n"));
+    }
+
+    @Test
+    public void gitLocalTest_010() throws Exception {
+        final String teamURI = this.createRemoteRepository("team", "team.conf", "application { hello = \"team\", team = \"core\" }");
+        final String envURI = this.createRemoteRepository("env", "env.conf", "application { team = \"env\", env = \"prod\" }");
+
+        final Config remoteConfig = loadConfig(ConfigFactory.parseString(
+            "git.parallelism = 2\n"
+                + "git.repositories = [\n"
+                + "  { filepath = \"conf/application.conf\" },\n"
+                + "  { uri = \"" + teamURI + "\", filepath = \"team.conf\" },\n"
+                + "  { uri = \"" + envURI + "\", filepath = \"env.conf\", fetch.mode = \"in-memory\" }\n"
+                + "]\n"
+        ).withFallback(this.buildConfiguration("")));
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals("team", remoteConfig.getString("application.hello"));
+        Assert.assertEquals("env", remoteConfig.getString("application.team"));
+        Assert.assertEquals("prod", remoteConfig.getString("application.env"));
+    }
+
+    @Test
+    public void gitLocalTest_011() {
+        final Map<String, Long> metrics = new ConcurrentHashMap<>();
+        final GitProvider provider = new GitProvider();
+        provider.setMetricsListener(new GitMetricsListener() {
+
+            @Override
+            public void onFetch(final String repositoryURI, final String fetchMode, final long duration, final long receivedObjects) {
+                metrics.put("fetch.objects", receivedObjects);
+            }
+
+            @Override
+            public void onRead(final String repositoryURI, final String filepath, final long duration, final long size) {
+                metrics.put("read.size", size);
+            }
+
+            @Override
+            public void onParse(final String repositoryURI, final long duration, final int entries) {
+                metrics.put("parse.entries", (long) entries);
+            }
+
+            @Override
+            public void onEmit(final long duration, final int entries) {
+                metrics.put("emit.entries", (long) entries);
+            }
+
+        });
+
+        final StringBuilder stringBuilder = new StringBuilder(512);
+        provider.loadData(
+            this.buildConfiguration("git.fetch.mode = \"single-branch\"\n").getConfig("git"),
+            keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder),
+            FileCfgObject::apply
+        );
+        Assert.assertTrue(metrics.get("fetch.objects") > 0);
+        Assert.assertEquals(Long.valueOf(REMOTE_CONFIGURATION.getBytes(StandardCharsets.UTF_8).length), metrics.get("read.size"));
+        Assert.assertEquals(Long.valueOf(3), metrics.get("parse.entries"));
+        Assert.assertEquals(Long.valueOf(3), metrics.get("emit.entries"));
+    }
+
+    @Test(expected = ConfigException.ValidationFailed.class)
+    public void gitLocalTest_012() {
+        loadConfig(this.buildConfiguration("git.fetch.mode = \"in-memory\"\ngit.max-file-size = 16\n"));
+    }
+
+    @Test
+    public void gitLocalTest_013() throws Exception {
+        final GitProvider provider = new GitProvider();
+        final Config config = this.buildConfiguration("git.fetch.mode = \"in-memory\"\n").getConfig("git");
+
+        final GitConfigChange initial = provider.loadChanges(config, null);
+        Assert.assertNull(initial.getPreviousCommitId());
+        Assert.assertEquals(3, initial.getChangedKeys().size());
+        Assert.assertTrue(initial.getRemovedKeys().isEmpty());
+
+        this.pushFile("README.md", "Unrelated change");
+        final GitConfigChange unrelated = provider.loadChanges(config, initial.getCommitId());
+        Assert.assertNotEquals(initial.getCommitId(), unrelated.getCommitId());
+        Assert.assertTrue(unrelated.isEmpty());
+
+        this.pushConfiguration("application {\n    five = 6\n    hello = \"world\"\n}\n");
+        final GitConfigChange change = provider.loadChanges(config, unrelated.getCommitId());
+        Assert.assertEquals(Collections.singleton("application.five"), change.getChangedKeys());
+        Assert.assertEquals(Collections.singleton("application.is-enabled"), change.getRemovedKeys());
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        change.apply(keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder), FileCfgObject::apply);
+        Assert.assertEquals(6, ConfigFactory.parseString(stringBuilder.toString()).getInt("application.five"));
+    }
+
+    @Test
+    public void gitLocalTest_014() throws Exception {
+        final File parsedDir = this.temporaryFolder.newFolder("parsed");
+        final AtomicInteger reads = new AtomicInteger();
+        final GitProvider provider = new GitProvider();
+        provider.setMetricsListener(new GitMetricsListener() {
+
+            @Override
+            public void onRead(final String repositoryURI, final String filepath, final long duration, final long size) {
+                reads.incrementAndGet();
+            }
+
+        });
+        final Config config = this.buildConfiguration(
+            "git.fetch.mode = \"in-memory\"\ngit.cache.parsed.directory = \"" + parsedDir.getAbsolutePath() + "\"\n"
+        ).getConfig("git");
+
+        // Parsed on the first load only
+        for (int i = 0; i < 2; ++i) {
+            final StringBuilder stringBuilder = new StringBuilder(512);
+            provider.loadData(config, keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder), FileCfgObject::apply);
+            Assert.assertEquals(5, ConfigFactory.parseString(stringBuilder.toString()).getInt("application.five"));
+        }
+        Assert.assertEquals(1, reads.get());
+        Assert.assertEquals(1, parsedDir.listFiles().length);
+
+        // Unrelated commits keep the same blob
+        this.pushFile("README.md", "Unrelated change");
+        provider.loadData(config, keyValueCfgObject -> { }, FileCfgObject::apply);
+        Assert.assertEquals(1, reads.get());
+
+        // Entries bigger than the cache are evicted
+        this.pushConfiguration("application.five = 6\n");
+        provider.loadData(
+            ConfigFactory.parseString("cache.parsed.max-size = 1").withFallback(config),
+            keyValueCfgObject -> { },
+            FileCfgObject::apply
+        );
+        Assert.assertEquals(2, reads.get());
+        Assert.assertEquals(0, parsedDir.listFiles().length);
+    }
+
+    @Test
+    public void gitLocalTest_015() throws Exception {
+        this.pushFile("data/large.bin", "Large unrelated content");
+        final ObjectId largeBlobId;
+        try (final Repository remote = Git.open(new File(new URI(this.remoteURI))).getRepository()) {
+            largeBlobId = remote.resolve("master:data/large.bin");
+        }
+        final Config config = this.buildConfiguration("git.fetch.mode = \"partial\"\n").getConfig("git");
+
+        // The server doesn't support filters
+        final Repository fullRepository = new GitProvider().openRepository(config, this.remoteURI, "none");
+        Assert.assertTrue(fullRepository.getObjectDatabase().has(largeBlobId));
+        Workspace.release(fullRepository);
+
+        try (final Repository remote = Git.open(new File(new URI(this.remoteURI))).getRepository()) {
+            final StoredConfig storedConfig = remote.getConfig();
+            storedConfig.setBoolean("uploadpack", null, "allowfilter", true);
+            storedConfig.setBoolean("uploadpack", null, "allowanysha1inwant", true);
+            storedConfig.save();
+        }
+        final Repository partialRepository = new GitProvider().openRepository(config, this.remoteURI, "none");
+        Assert.assertFalse(partialRepository.getObjectDatabase().has(largeBlobId));
+        Assert.assertTrue(partialRepository.getObjectDatabase().has(partialRepository.resolve("HEAD:conf/application.conf")));
+        Workspace.release(partialRepository);
+
+        final Config remoteConfig = loadConfig(this.buildConfiguration("git.fetch.mode = \"partial\"\n"));
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+    }
+
+    @Test
+    public void gitLocalTest_016() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("shared-cache");
+        final Config config = this.buildConfiguration(
+            "git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+                + "git.startup-jitter = 50ms\n"
+        ).getConfig("git");
+        final AtomicInteger transfers = new AtomicInteger();
+        final GitMetricsListener metricsListener = new GitMetricsListener() {
+
+            @Override
+            public void onFetch(final String repositoryURI, final String fetchMode, final long duration, final long receivedObjects) {
+                if (receivedObjects > 0) {
+                    transfers.incrementAndGet();
+                }
+            }
+
+        };
+
+        final int instances = 8;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(instances);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < instances; ++i) {
+                // Distinct configurations, the loadings are not shared in process
+                final Config instanceConfig = config.withValue("instance", ConfigValueFactory.fromAnyRef(i));
+                futures.add(executor.submit(() -> {
+                    final GitProvider provider = new GitProvider();
+                    provider.setMetricsListener(metricsListener);
+                    final StringBuilder stringBuilder = new StringBuilder(512);
+                    startSignal.await();
+                    provider.loadData(instanceConfig, keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder), FileCfgObject::apply);
+                    return stringBuilder.toString();
+                }));
+            }
+            startSignal.countDown();
+            for (final Future<String> future : futures) {
+                Assert.assertEquals(5, ConfigFactory.parseString(future.get(30, TimeUnit.SECONDS)).getInt("application.five"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, transfers.get());
+    }
+
+    @Test
+    public void gitLocalTest_017() throws Exception {
+        final StringBuilder stringBuilder = new StringBuilder(512);
+        final CompletableFuture<Void> loading = new GitProvider().loadDataAsync(
+            this.buildConfiguration("git.fetch.mode = \"in-memory\"\n").getConfig("git"),
+            keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder),
+            FileCfgObject::apply
+        );
+        loading.get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(5, ConfigFactory.parseString(stringBuilder.toString()).getInt("application.five"));
+
+        // Remote hanging longer than the total timeout
+        final GitProvider provider = new GitProvider();
+        provider.setMetricsListener(new GitMetricsListener() {
+
+            @Override
+            public void onFetch(final String repositoryURI, final String fetchMode, final long duration, final long receivedObjects) {
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+        final long startTime = System.nanoTime();
+        try {
+            provider.loadDataAsync(
+                this.buildConfiguration("git.fetch.mode = \"in-memory\"\ngit.timeout.total = 200ms\n").getConfig("git"),
+                keyValueCfgObject -> Assert.fail(),
+                FileCfgObject::apply
+            ).get(30, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof RemoteConfException);
+        }
+        Assert.assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test
+    public void gitLocalTest_018() throws Exception {
+        final File workspaceDir = this.temporaryFolder.newFolder("workspace");
+
+        // Left by a crashed process
+        final File staleDir = new File(workspaceDir, "play-rconf-git-stale");
+        Assert.assertTrue(new File(staleDir, "objects").mkdirs());
+        Assert.assertTrue(new File(workspaceDir, "play-rconf-git-stale.lock").createNewFile());
+
+        // Left by an older version, without lock file
+        final File oldDir = new File(workspaceDir, "play-rconf-git-old");
+        Assert.assertTrue(new File(oldDir, "objects").mkdirs());
+        Assert.assertTrue(oldDir.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+
+        for (final String fetchMode : new String[]{"clone", "single-branch", "partial"}) {
+            final Config remoteConfig = loadConfig(this.buildConfiguration(
+                "git.fetch.mode = \"" + fetchMode + "\"\ngit.workspace.directory = \"" + workspaceDir.getAbsolutePath() + "\"\n"
+            ));
+            Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+            Assert.assertEquals(0, workspaceDir.list().length);
+        }
+    }
+
+    @Test
+    public void gitLocalTest_019() throws Exception {
+        final File lfsDir = this.temporaryFolder.newFolder("lfs");
+        final File targetDir = this.temporaryFolder.newFolder("targets");
+        final byte[] lfsContent = "large binary payload".getBytes(StandardCharsets.UTF_8);
+        final StringBuilder oid = new StringBuilder(64);
+        for (final byte b : MessageDigest.getInstance("SHA-256").digest(lfsContent)) {
+            oid.append(String.format("%02x", b));
+        }
+        final File lfsObject = new File(lfsDir, oid.substring(0, 2) + "/" + oid.substring(2, 4) + "/" + oid);
+        Files.createDirectories(lfsObject.getParentFile().toPath());
+        Files.write(lfsObject.toPath(), lfsContent);
+
+        this.pushFile("certs/keystore.bin", "keystore payload");
+        this.pushFile(
+            "certs/large.bin",
+            "version https://git-lfs.github.com/spec/v1\noid sha256:" + oid + "\nsize " + lfsContent.length + "\n"
+        );
+        this.pushConfiguration(REMOTE_CONFIGURATION
+            + "\napplication.keystore = \"<FILE>" + new File(targetDir, "keystore.bin").getAbsolutePath() + ";git:certs/keystore.bin\""
+            + "\napplication.large = \"<FILE>" + new File(targetDir, "large.bin").getAbsolutePath() + ";git:/certs/large.bin\"\n");
+
+        final Config remoteConfig = loadConfig(this.buildConfiguration(
+            "git.fetch.mode = \"partial\"\ngit.lfs.directory = \"" + lfsDir.getAbsolutePath() + "\"\n"
+        ));
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals(
+            "keystore payload",
+            new String(Files.readAllBytes(new File(targetDir, "keystore.bin").toPath()), StandardCharsets.UTF_8)
+        );
+        Assert.assertArrayEquals(lfsContent, Files.readAllBytes(new File(targetDir, "large.bin").toPath()));
+
+        // Missing LFS object
+        Files.delete(lfsObject.toPath());
+        try {
+            loadConfig(this.buildConfiguration(
+                "git.fetch.mode = \"single-branch\"\ngit.lfs.directory = \"" + lfsDir.getAbsolutePath() + "\"\n"
+            ));
+            Assert.fail();
+        } catch (final IllegalArgumentException ex) {
+            Assert.assertEquals(String.format("LFS object (%s) not found.", oid), ex.getMessage());
+        }
+
+        // Without LFS object store
+        try {
+            loadConfig(this.buildConfiguration("git.fetch.mode = \"single-branch\"\n"));
+            Assert.fail();
+        } catch (final IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith("Setting (lfs.directory) is required"));
+        }
+
+        // The store of the source repository is used by default
+        final File sourceLfsObject = new File(
+            new File(new URI(this.remoteURI)),
+            "lfs/objects/" + oid.substring(0, 2) + "/" + oid.substring(2, 4) + "/" + oid
+        );
+        Files.createDirectories(sourceLfsObject.getParentFile().toPath());
+        Files.write(sourceLfsObject.toPath(), lfsContent);
+        Files.delete(new File(targetDir, "large.bin").toPath());
+        loadConfig(this.buildConfiguration("git.fetch.mode = \"local\"\n"));
+        Assert.assertArrayEquals(lfsContent, Files.readAllBytes(new File(targetDir, "large.bin").toPath()));
+    }
+
+    @Test
+    public void gitLocalTest_020() throws Exception {
+        final File workspaceDir = this.temporaryFolder.newFolder("workspace");
+        final File bundleFile = new File(this.temporaryFolder.getRoot(), "config.bundle");
+        try (final Git git = Git.open(new File(URI.create(this.remoteURI)));
+             final OutputStream os = Files.newOutputStream(bundleFile.toPath())) {
+            final BundleWriter bundleWriter = new BundleWriter(git.getRepository());
+            bundleWriter.include(git.getRepository().exactRef(Constants.HEAD));
+            bundleWriter.include(git.getRepository().exactRef(Constants.R_HEADS + "master"));
+            bundleWriter.writeBundle(NullProgressMonitor.INSTANCE, os);
+        }
+
+        // Pushed after the bundle was built
+        this.pushConfiguration(REMOTE_CONFIGURATION.replace("five = 5", "five = 6"));
+
+        final Config bundleConfig = loadConfig(this.buildConfiguration("git.fetch.mode = \"bundle\"\n")
+            .withValue("git.uri", ConfigValueFactory.fromAnyRef(bundleFile.getAbsolutePath())));
+        Assert.assertEquals(5, bundleConfig.getInt("application.five"));
+        Assert.assertEquals("world", bundleConfig.getString("application.hello"));
+
+        final Config localConfig = loadConfig(this.buildConfiguration(
+            "git.fetch.mode = \"local\"\ngit.workspace.directory = \"" + workspaceDir.getAbsolutePath() + "\"\n"
+        ));
+        Assert.assertEquals(6, localConfig.getInt("application.five"));
+        Assert.assertEquals(0, workspaceDir.list().length);
+        try (final Git git = Git.open(new File(URI.create(this.remoteURI)))) {
+            Assert.assertTrue(git.getRepository().exactRef(Constants.HEAD).isSymbolic());
+        }
+    }
+
+    @Test
+    public void gitLocalTest_021() throws Exception {
+        this.pushFile("shared/base.conf", "application.base = \"shared\"\n");
+        this.pushFile("conf/common.conf", "include \"../shared/base.conf\"\napplication.common = 1\n");
+        this.pushConfiguration("include \"common.conf\"\ninclude \"/shared/base.conf\"\n" + REMOTE_CONFIGURATION);
+
+        final Config remoteConfig = loadConfig(this.buildConfiguration("git.fetch.mode = \"in-memory\"\n"));
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals(1, remoteConfig.getInt("application.common"));
+        Assert.assertEquals("shared", remoteConfig.getString("application.base"));
+
+        // Changing an included file only is a change
+        final GitProvider provider = new GitProvider();
+        final Config config = this.buildConfiguration("git.fetch.mode = \"in-memory\"\n").getConfig("git");
+        final GitConfigChange initial = provider.loadChanges(config, null);
+        this.pushFile("conf/common.conf", "include \"../shared/base.conf\"\napplication.common = 2\n");
+        final GitConfigChange change = provider.loadChanges(config, initial.getCommitId());
+        Assert.assertEquals(Collections.singleton("application.common"), change.getChangedKeys());
+
+        // Same with the included files recorded by the parsed configuration cache
+        final File parsedDir = this.temporaryFolder.newFolder("parsed");
+        final Config cachedConfig = this.buildConfiguration(
+            "git.fetch.mode = \"in-memory\"\ngit.cache.parsed.directory = \"" + parsedDir.getAbsolutePath() + "\"\n"
+        ).getConfig("git");
+        final GitConfigChange cachedInitial = provider.loadChanges(cachedConfig, null);
+        this.pushFile("README.md", "Unrelated change");
+        final GitConfigChange unrelated = provider.loadChanges(cachedConfig, cachedInitial.getCommitId());
+        Assert.assertTrue(unrelated.isEmpty());
+        this.pushFile("shared/base.conf", "application.base = \"changed\"\n");
+        final GitConfigChange nested = provider.loadChanges(cachedConfig, unrelated.getCommitId());
+        Assert.assertEquals(Collections.singleton("application.base"), nested.getChangedKeys());
+    }
+
+    @Test
+    public void gitLocalTest_022() throws Exception {
+        final String slowURI = "slow://" + new File(URI.create(this.remoteURI)).getAbsolutePath();
+
+        // The slow primary is hedged, then cancelled
+        final long startTime = System.nanoTime();
+        final Config hedgedConfig = loadConfig(this.buildConfiguration(
+            "git.fetch.mode = \"in-memory\"\ngit.hedge-delay = 100ms\ngit.mirrors = [\"" + this.remoteURI + "\"]\n"
+        ).withValue("git.uri", ConfigValueFactory.fromAnyRef(slowURI)));
+        Assert.assertEquals(5, hedgedConfig.getInt("application.five"));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < SLOW_TRANSPORT_DELAY);
+        for (int i = 0; i < 50 && SLOW_TRANSPORT_CANCELLATIONS.get() == 0; ++i) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(1, SLOW_TRANSPORT_CANCELLATIONS.get());
+
+        // A failed primary is hedged immediately
+        final Config failoverConfig = loadConfig(this.buildConfiguration(
+            "git.fetch.mode = \"single-branch\"\ngit.hedge-delay = 1h\ngit.mirrors = [\"" + this.remoteURI + "\"]\n"
+        ).withValue("git.uri", ConfigValueFactory.fromAnyRef(this.temporaryFolder.getRoot().toURI() + "missing.git")));
+        Assert.assertEquals(5, failoverConfig.getInt("application.five"));
+
+        // The cancelled attempt releases its workspace directory
+        final File workspaceDir = this.temporaryFolder.newFolder("workspace");
+        final Config releasedConfig = loadConfig(this.buildConfiguration(
+            "git.fetch.mode = \"single-branch\"\ngit.hedge-delay = 100ms\ngit.mirrors = [\"" + this.remoteURI + "\"]\n"
+                + "git.workspace.directory = \"" + workspaceDir.getAbsolutePath() + "\"\n"
+        ).withValue("git.uri", ConfigValueFactory.fromAnyRef(slowURI)));
+        Assert.assertEquals(5, releasedConfig.getInt("application.five"));
+        for (int i = 0; i < 50 && (SLOW_TRANSPORT_CANCELLATIONS.get() < 2 || workspaceDir.list().length > 0); ++i) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(2, SLOW_TRANSPORT_CANCELLATIONS.get());
+        Assert.assertEquals(0, workspaceDir.list().length);
+
+        // Fetches are aborted by their progress monitor once cancelled
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final MetricsProgressMonitor monitor = new MetricsProgressMonitor(GitMetricsListener.NOOP, this.remoteURI, cancelled::get);
+        Assert.assertFalse(monitor.isCancelled());
+        cancelled.set(true);
+        Assert.assertTrue(monitor.isCancelled());
+    }
+
+    @Test
+    public void gitLocalTest_023() throws Exception {
+        final Config config = this.buildConfiguration("git.fetch.mode = \"in-memory\"\n").getConfig("git");
+        final AtomicInteger fetches = new AtomicInteger();
+        final GitMetricsListener metricsListener = new GitMetricsListener() {
+
+            @Override
+            public void onFetch(final String repositoryURI, final String fetchMode, final long duration, final long receivedObjects) {
+                fetches.incrementAndGet();
+                try {
+                    // Keeps the loading in flight while the other instances start
+                    Thread.sleep(500);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        };
+
+        final int instances = 8;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(instances);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < instances; ++i) {
+                futures.add(executor.submit(() -> {
+                    final GitProvider provider = new GitProvider();
+                    provider.setMetricsListener(metricsListener);
+                    final StringBuilder stringBuilder = new StringBuilder(512);
+                    startSignal.await();
+                    provider.loadData(config, keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder), FileCfgObject::apply);
+                    return stringBuilder.toString();
+                }));
+            }
+            startSignal.countDown();
+            for (final Future<String> future : futures) {
+                Assert.assertEquals(5, ConfigFactory.parseString(future.get(30, TimeUnit.SECONDS)).getInt("application.five"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void gitLocalTest_024() throws Exception {
+        final File targetDir = this.temporaryFolder.newFolder("targets");
+        final List<GitConfigChange> changes = new ArrayList<>();
+        try (final GitConfigWatcher watcher = new GitConfigWatcher(this.buildConfiguration("").getConfig("git"))) {
+            watcher.addListener(changes::add);
+            watcher.check();
+
+            // The referenced file can't be written yet
+            final File blocker = new File(targetDir, "blocker");
+            Assert.assertTrue(blocker.createNewFile());
+            this.pushFile("certs/keystore.bin", "keystore payload");
+            this.pushConfiguration(REMOTE_CONFIGURATION
+                + "\napplication.keystore = \"<FILE>" + new File(blocker, "keystore.bin").getAbsolutePath() + ";git:certs/keystore.bin\"\n");
+            try {
+                watcher.check();
+                Assert.fail();
+            } catch (final IOException ignore) {
+            }
+            Assert.assertTrue(changes.isEmpty());
+
+            // The same commit is retried by the next poll
+            Assert.assertTrue(blocker.delete());
+            watcher.check();
+            Assert.assertEquals(1, changes.size());
+            Assert.assertEquals(Collections.singleton("application.keystore"), changes.get(0).getChangedKeys());
+            Assert.assertTrue(new File(blocker, "keystore.bin").isFile());
+        }
+    }
+
+    @Test
+    public void gitLocalTest_025() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        try (final Git remote = Git.open(new File(URI.create(this.remoteURI)))) {
+            remote.branchCreate().setName("feature").setStartPoint("master").call();
+        }
+        final Config initialConfiguration = this.buildConfiguration(
+            "git.branch = \"feature\"\ngit.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+        );
+        Assert.assertEquals(5, loadConfig(initialConfiguration).getInt("application.five"));
+
+        // The remote answers without the ref, the snapshot is not used
+        try (final Git remote = Git.open(new File(URI.create(this.remoteURI)))) {
+            remote.branchDelete().setBranchNames("feature").setForce(true).call();
+        }
+        try {
+            loadConfig(initialConfiguration);
+            Assert.fail();
+        } catch (final IllegalArgumentException ex) {
+            Assert.assertEquals("Ref (refs/heads/feature) not found.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void gitLocalTest_026() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        final Config initialConfiguration = this.buildConfiguration("git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n");
+        Assert.assertEquals(5, loadConfig(initialConfiguration).getInt("application.five"));
+        final File[] snapshotFiles = cacheDir.listFiles((dir, name) -> name.endsWith(".snapshot"));
+        Assert.assertEquals(1, snapshotFiles.length);
+
+        // Corrupted snapshot holding a huge entries count
+        try (final DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshotFiles[0].toPath()))) {
+            out.writeInt(0x52434647);
+            out.writeInt(3);
+            out.write(new byte[Constants.OBJECT_ID_LENGTH]);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        Assert.assertNull(ConfigSnapshot.read(snapshotFiles[0]));
+        Assert.assertFalse(snapshotFiles[0].exists());
+
+        Assert.assertEquals(5, loadConfig(initialConfiguration).getInt("application.five"));
+        Assert.assertNotNull(ConfigSnapshot.read(snapshotFiles[0]));
+    }
+
+    @Test
+    public void gitLocalTest_027() throws Exception {
+        this.pushConfiguration("include \"overrides.conf\"\n" + REMOTE_CONFIGURATION);
+        final File parsedDir = this.temporaryFolder.newFolder("parsed");
+        final GitProvider provider = new GitProvider();
+        final Config config = this.buildConfiguration("git.fetch.mode = \"in-memory\"\n").getConfig("git");
+        final Config cachedConfig = this.buildConfiguration(
+            "git.fetch.mode = \"in-memory\"\ngit.cache.parsed.directory = \"" + parsedDir.getAbsolutePath() + "\"\n"
+        ).getConfig("git");
+        final GitConfigChange initial = provider.loadChanges(config, null);
+        final GitConfigChange cachedInitial = provider.loadChanges(cachedConfig, null);
+        Assert.assertEquals(initial.getCommitId(), cachedInitial.getCommitId());
+
+        // Adding a missing included file is a change
+        this.pushFile("conf/overrides.conf", "application.overridden = true\n");
+        final GitConfigChange change = provider.loadChanges(config, initial.getCommitId());
+        Assert.assertEquals(Collections.singleton("application.overridden"), change.getChangedKeys());
+        final GitConfigChange cachedChange = provider.loadChanges(cachedConfig, cachedInitial.getCommitId());
+        Assert.assertEquals(Collections.singleton("application.overridden"), cachedChange.getChangedKeys());
+        Assert.assertTrue(loadConfig(this.buildConfiguration(
+            "git.cache.parsed.directory = \"" + parsedDir.getAbsolutePath() + "\"\n"
+        )).getBoolean("application.overridden"));
+    }
+
+    @Test
+    public void gitLocalTest_028() throws Exception {
+        this.pushFile("conf/common.conf", "application.common = 1\n");
+        this.pushConfiguration("include \"common.conf\"\n" + REMOTE_CONFIGURATION);
+        try (final Repository remote = Git.open(new File(new URI(this.remoteURI))).getRepository()) {
+            final StoredConfig storedConfig = remote.getConfig();
+            storedConfig.setBoolean("uploadpack", null, "allowfilter", true);
+            storedConfig.setBoolean("uploadpack", null, "allowanysha1inwant", true);
+            storedConfig.save();
+        }
+
+        // The included blob is not fetched with the configuration file
+        final Config config = this.buildConfiguration("git.fetch.mode = \"partial\"\n").getConfig("git");
+        final Repository partialRepository = new GitProvider().openRepository(config, this.remoteURI, "none");
+        Assert.assertFalse(partialRepository.getObjectDatabase().has(partialRepository.resolve("HEAD:conf/common.conf")));
+        Workspace.release(partialRepository);
+
+        final Config remoteConfig = loadConfig(this.buildConfiguration("git.fetch.mode = \"partial\"\n"));
+        Assert.assertEquals(5, remoteConfig.getInt("application.five"));
+        Assert.assertEquals(1, remoteConfig.getInt("application.common"));
+    }
+
+    @Test
+    public void gitLocalTest_029() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        final GitProvider provider = new GitProvider();
+
+        // An explicit fetch mode other than clone or single-branch is kept
+        final Config inMemoryConfig = this.buildConfiguration(
+            "git.fetch.mode = \"in-memory\"\ngit.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+        ).getConfig("git");
+        final Repository inMemoryRepository = provider.openRepository(inMemoryConfig, this.remoteURI, "none");
+        Assert.assertNull(inMemoryRepository.getDirectory());
+        Workspace.release(inMemoryRepository);
+        Assert.assertEquals(0, cacheDir.listFiles((dir, name) -> name.endsWith(".git")).length);
+
+        // The mirror replaces the single-branch fetch mode
+        final Config singleBranchConfig = this.buildConfiguration(
+            "git.fetch.mode = \"single-branch\"\ngit.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+        ).getConfig("git");
+        final Repository mirroredRepository = provider.openRepository(singleBranchConfig, this.remoteURI, "none");
+        Workspace.release(mirroredRepository);
+        Assert.assertEquals(1, cacheDir.listFiles((dir, name) -> name.endsWith(".git")).length);
+    }
+
+    @Test
+    public void gitLocalTest_030() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        final Config configuration = this.buildConfiguration(
+            "git.fetch.mode = \"in-memory\"\ngit.hedge-delay = 1h\ngit.mirrors = [\"" + this.remoteURI + "\"]\n"
+                + "git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\n"
+        ).withValue("git.uri", ConfigValueFactory.fromAnyRef(this.temporaryFolder.getRoot().toURI() + "missing.git"));
+        Assert.assertEquals(5, loadConfig(configuration).getInt("application.five"));
+
+        // The unreachable primary doesn't hide the new commit of the mirror
+        this.pushConfiguration(REMOTE_CONFIGURATION.replace("five = 5", "five = 6"));
+        Assert.assertEquals(6, loadConfig(configuration).getInt("application.five"));
+    }
+
+    @Test
+    public void gitLocalTest_031() throws Exception {
+        final File workspaceDir = this.temporaryFolder.newFolder("workspace");
+        final Config config = this.buildConfiguration(
+            "git.workspace.directory = \"" + workspaceDir.getAbsolutePath() + "\"\n"
+        ).getConfig("git");
+
+        // Concurrent loadings never share a temporary directory
+        final int threads = 16;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Set<File> directories = ConcurrentHashMap.newKeySet();
+        try {
+            final List<Future<File>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    return Workspace.createDirectory(config);
+                }));
+            }
+            startSignal.countDown();
+            for (final Future<File> future : futures) {
+                final File directory = future.get(30, TimeUnit.SECONDS);
+                Assert.assertTrue(directory.isDirectory());
+                directories.add(directory);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(threads, directories.size());
+
+        for (final File directory : directories) {
+            Workspace.delete(directory);
+        }
+        Assert.assertEquals(0, workspaceDir.list().length);
+    }
+
+    @Test
+    public void gitLocalTest_032() throws Exception {
+        try (final GitConfigWatcher watcher = new GitConfigWatcher(
+            this.buildConfiguration("git.watch.interval = 1m\ngit.watch.max-backoff = 10m\n").getConfig("git"))) {
+            Assert.assertEquals(TimeUnit.MINUTES.toMillis(2), watcher.backoffOf(1));
+            Assert.assertEquals(TimeUnit.MINUTES.toMillis(10), watcher.backoffOf(4));
+            Assert.assertEquals(TimeUnit.MINUTES.toMillis(10), watcher.backoffOf(Integer.MAX_VALUE));
+        }
+
+        // Never shorter than the interval
+        try (final GitConfigWatcher watcher = new GitConfigWatcher(
+            this.buildConfiguration("git.watch.interval = 1m\ngit.watch.max-backoff = 10s\n").getConfig("git"))) {
+            Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), watcher.backoffOf(3));
+        }
+
+        // No listener is notified once the watcher is closed
+        final List<GitConfigChange> changes = new ArrayList<>();
+        final GitConfigWatcher watcher = new GitConfigWatcher(this.buildConfiguration("").getConfig("git"));
+        watcher.addListener(change -> watcher.close());
+        watcher.addListener(changes::add);
+        watcher.check();
+        this.pushConfiguration(REMOTE_CONFIGURATION + "application.closed = true\n");
+        watcher.check();
+        Assert.assertTrue(changes.isEmpty());
+    }
+
+    /**
+     * Creates another bare repository holding a single file.
+     *
+     * @param name    Repository name
+     * @param path    File path relative to the working tree
+     * @param content File content
+     * @return URI of the bare repository
+     */
+    private String createRemoteRepository(final String name, final String path, final String content) throws Exception {
+        final File dir = this.temporaryFolder.newFolder(name + "-work");
+        try (final Git git = Git.init().setDirectory(dir).call()) {
+            commitFile(git, path, content);
+        }
+
+        final File bareDir = this.temporaryFolder.newFolder(name + ".git");
+        Git.cloneRepository()
+            .setURI(dir.toURI().toString())
+            .setDirectory(bareDir)
+            .setBare(true)
+            .call()
+            .close();
+        return bareDir.toURI().toString();
+    }
+
+    /**
+     * Commits a new configuration content and pushes it to the bare repository.
+     *
+     * @param content New configuration content
+     */
+    private void pushConfiguration(final String content) throws Exception {
+        this.pushFile("conf/application.conf", content);
+    }
+
+    /**
+     * Commits a file and pushes it to the bare repository.
+     *
+     * @param path    File path relative to the working tree
+     * @param content File content
+     */
+    private void pushFile(final String path, final String content) throws Exception {
+        try (final Git git = Git.open(this.workDir)) {
+            commitFile(git, path, content);
+            git.push()
+                .setRemote(this.remoteURI)
+                .setRefSpecs(new RefSpec("master:master"))
+                .call();
+        }
+    }
+
+    /**
+     * Builds the initial configuration pointing to the local bare repository.
+     *
+     * @param extra Extra configuration lines
+     * @return Initial configuration
+     */
+    private Config buildConfiguration(final String extra) {
+        return ConfigFactory.parseString(
+            "application.hello = \"Bad value\"\n"
+                + "git.uri = \"" + this.remoteURI + "\"\n"
+                + "git.filepath = \"conf/application.conf\"\n"
+                + "git.mode = \"none\"\n"
+                + extra
+        );
+    }
+
+    /**
+     * Loads the remote configuration and merges it with the initial one.
+     *
+     * @param initialConfiguration Initial configuration
+     * @return Merged configuration
+     */
+    private static Config loadConfig(final Config initialConfiguration) {
+        final StringBuilder stringBuilder = new StringBuilder(512);
+        final Provider provider = new GitProvider();
+        provider.loadData(
+            initialConfiguration.getConfig(provider.getConfigurationObjectName()),
+            keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder),
+            FileCfgObject::apply
+        );
+        return ConfigFactory
+            .parseString(stringBuilder.toString())
+            .withFallback(initialConfiguration);
+    }
+
+    /**
+     * Writes and commits a file on the working tree.
+     *
+     * @param git     Git working repository
+     * @param path    File path relative to the working tree
+     * @param content File content
+     */
+    private static void commitFile(final Git git, final String path, final String content) throws Exception {
+        final File file = new File(git.getRepository().getWorkTree(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(path).call();
+        git.commit().setMessage(String.format("Update %s", path)).call();
+    }
+
+    /**
+     * Counts objects stored in a local repository.
+     *
+     * @param repository Local repository
+     * @return Number of loose and packed objects
+     */
+    private static long countObjects(final Repository repository) throws IOException {
+        try {
+            final GC.RepoStatistics statistics = new GC((FileRepository) repository).getStatistics();
+            return statistics.numberOfLooseObjects + statistics.numberOfPackedObjects;
+        } finally {
+            Workspace.release(repository);
+        }
+    }
+
+}
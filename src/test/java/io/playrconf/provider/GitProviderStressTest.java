@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 The Play Remote Configuration Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.playrconf.provider;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import io.playrconf.sdk.FileCfgObject;
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GitProviderStressTest.
+ * <p>
+ * Loads the configuration of a local bare repository from an increasing
+ * number of concurrent provider instances, as several applications of a
+ * same JVM would. Each loading must succeed and leave no temporary
+ * repository behind. The throughput and the latency percentiles of each
+ * concurrency level are reported on the standard output.
+ * </p>
+ * <p>
+ * Skipped unless the {@code stress} system property is {@code true}, e.g.
+ * {@code mvn test -Dtest=GitProviderStressTest -Dstress=true}.
+ * </p>
+ *
+ * @author Felipe Bonezi
+ * @since 21.01
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class GitProviderStressTest {
+
+    /**
+     * Remote configuration file content.
+     */
+    private static final String REMOTE_CONFIGURATION = "application {\n"
+        + "    five = 5\n"
+        + "    hello = \"world\"\n"
+        + "}\n";
+
+    /**
+     * Concurrency levels to run.
+     */
+    private static final int[] CONCURRENCY_LEVELS = {1, 2, 4, 8, 16};
+
+    /**
+     * Loadings run by each thread of a concurrency level.
+     */
+    private static final int LOADINGS_PER_THREAD = 10;
+
+    /**
+     * Temporary folder holding the local repositories.
+     */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * URI of the local bare repository.
+     */
+    private String remoteURI;
+
+    /**
+     * Directory holding the temporary repositories.
+     */
+    private File workspaceDir;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("Stress tests are run with -Dstress=true", Boolean.getBoolean("stress"));
+
+        final File workDir = this.temporaryFolder.newFolder("work");
+        try (final Git git = Git.init().setDirectory(workDir).call()) {
+            final File file = new File(workDir, "conf/application.conf");
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), REMOTE_CONFIGURATION.getBytes(StandardCharsets.UTF_8));
+            git.add().addFilepattern("conf/application.conf").call();
+            git.commit().setMessage("Add configuration").call();
+        }
+
+        final File bareDir = this.temporaryFolder.newFolder("remote.git");
+        Git.cloneRepository()
+            .setURI(workDir.toURI().toString())
+            .setDirectory(bareDir)
+            .setBare(true)
+            .call()
+            .close();
+        this.remoteURI = bareDir.toURI().toString();
+        this.workspaceDir = this.temporaryFolder.newFolder("workspace");
+    }
+
+    @Test
+    public void gitStressTest_001() throws Exception {
+        // Identical configurations, concurrent loadings share their fetch
+        this.run("single-branch, shared", this.buildConfiguration("git.fetch.mode = \"single-branch\"\n"), false);
+    }
+
+    @Test
+    public void gitStressTest_002() throws Exception {
+        this.run("single-branch, distinct", this.buildConfiguration("git.fetch.mode = \"single-branch\"\n"), true);
+    }
+
+    @Test
+    public void gitStressTest_003() throws Exception {
+        this.run("in-memory, distinct", this.buildConfiguration("git.fetch.mode = \"in-memory\"\n"), true);
+    }
+
+    @Test
+    public void gitStressTest_004() throws Exception {
+        final File cacheDir = this.temporaryFolder.newFolder("cache");
+        this.run(
+            "mirror, distinct",
+            this.buildConfiguration(
+                "git.cache.directory = \"" + cacheDir.getAbsolutePath() + "\"\ngit.cache.skip-if-unchanged = false\n"
+            ),
+            true
+        );
+    }
+
+    /**
+     * Runs every concurrency level and reports its throughput and latency
+     * percentiles.
+     *
+     * @param scenario Scenario name
+     * @param config   Provider configuration
+     * @param distinct Give each thread a distinct configuration, so the loadings are not shared
+     */
+    private void run(final String scenario, final Config config, final boolean distinct) throws Exception {
+        System.out.printf("%-24s %8s %12s %10s %10s %10s%n", scenario, "threads", "loadings/s", "p50 (ms)", "p99 (ms)", "max (ms)");
+        for (final int threads : CONCURRENCY_LEVELS) {
+            final CountDownLatch startSignal = new CountDownLatch(1);
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            final long[] latencies = new long[threads * LOADINGS_PER_THREAD];
+            final long elapsedTime;
+            try {
+                final List<Future<?>> futures = new ArrayList<>(threads);
+                for (int i = 0; i < threads; ++i) {
+                    final int thread = i;
+                    final Config threadConfig = distinct ? config.withValue("git.instance", ConfigValueFactory.fromAnyRef(thread)) : config;
+                    futures.add(executor.submit(() -> {
+                        final GitProvider provider = new GitProvider();
+                        startSignal.await();
+                        for (int j = 0; j < LOADINGS_PER_THREAD; ++j) {
+                            final long startTime = System.nanoTime();
+                            final StringBuilder stringBuilder = new StringBuilder(128);
+                            provider.loadData(
+                                threadConfig.getConfig(provider.getConfigurationObjectName()),
+                                keyValueCfgObject -> keyValueCfgObject.apply(stringBuilder),
+                                FileCfgObject::apply
+                            );
+                            latencies[thread * LOADINGS_PER_THREAD + j] = System.nanoTime() - startTime;
+                            Assert.assertEquals(5, ConfigFactory.parseString(stringBuilder.toString()).getInt("application.five"));
+                        }
+                        return null;
+                    }));
+                }
+
+                final long startTime = System.nanoTime();
+                startSignal.countDown();
+                for (final Future<?> future : futures) {
+                    future.get(2, TimeUnit.MINUTES);
+                }
+                elapsedTime = System.nanoTime() - startTime;
+            } finally {
+                executor.shutdownNow();
+            }
+
+            Arrays.sort(latencies);
+            System.out.printf(
+                "%-24s %8d %12.1f %10.2f %10.2f %10.2f%n",
+                "",
+                threads,
+                latencies.length * (double) TimeUnit.SECONDS.toNanos(1) / elapsedTime,
+                percentile(latencies, 0.50),
+                percentile(latencies, 0.99),
+                percentile(latencies, 1.0)
+            );
+            Assert.assertEquals(0, this.workspaceDir.list().length);
+        }
+    }
+
+    /**
+     * Builds the configuration pointing to the local bare repository.
+     *
+     * @param extra Extra configuration lines
+     * @return Configuration
+     */
+    private Config buildConfiguration(final String extra) {
+        return ConfigFactory.parseString(
+            "git.uri = \"" + this.remoteURI + "\"\n"
+                + "git.filepath = \"conf/application.conf\"\n"
+                + "git.mode = \"none\"\n"
+                + "git.workspace.directory = \"" + this.workspaceDir.getAbsolutePath() + "\"\n"
+                + extra
+        );
+    }
+
+    /**
+     * Get a percentile of sorted latencies.
+     *
+     * @param latencies Sorted latencies in nanoseconds
+     * @param rank      Percentile rank, between 0 and 1
+     * @return Latency in milliseconds
+     */
+    private static double percentile(final long[] latencies, final double rank) {
+        final int index = (int) Math.ceil(rank * latencies.length) - 1;
+        return latencies[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}